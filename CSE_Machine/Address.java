@@ -0,0 +1,30 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// Address class replaces an identifier in a control structure once it has been
+// resolved to a variable bound by an enclosing lambda. depth counts how many
+// environments up the binding lives and slot is its position in that frame.
+public class Address extends ASTNode {
+  private final int depth;
+  private final int slot;
+
+  public Address(ASTNode identifier, int depth, int slot) {
+    setType(ASTNodeType.ADDRESS);
+    setValue(identifier.getValue());
+    setSourceLineNumber(identifier.getSourceLineNumber());
+    this.depth = depth;
+    this.slot = slot;
+  }
+
+  // Getter method for the number of environments to walk up
+  public int getDepth() {
+    return depth;
+  }
+
+  // Getter method for the position of the binding within its environment
+  public int getSlot() {
+    return slot;
+  }
+}
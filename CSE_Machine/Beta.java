@@ -19,11 +19,6 @@ public class Beta extends ASTNode {
     ELSE = new Stack<ASTNode>();
   }
   
-  // Method to accept a NodeCopier visitor and return a copy of this Beta node
-  public Beta accept(NodeCopier nodeCopier) {
-    return nodeCopier.getBetaCopy(this);
-  }
-  
   // Getter method for the THEN stack
   public Stack<ASTNode> getTHEN() {
     return THEN;
@@ -0,0 +1,38 @@
+package CSE_Machine;
+
+// BoolValue class represents the two truthvalues; only TRUE and FALSE ever exist
+public final class BoolValue extends Value {
+  public static final BoolValue TRUE = new BoolValue(true);
+  public static final BoolValue FALSE = new BoolValue(false);
+
+  private final boolean value;
+
+  private BoolValue(boolean value) {
+    this.value = value;
+  }
+
+  // Method to get the shared instance for the given boolean
+  public static BoolValue valueOf(boolean value) {
+    return value ? TRUE : FALSE;
+  }
+
+  // Getter method for the primitive value
+  public boolean booleanValue() {
+    return value;
+  }
+
+  @Override
+  public String getValue() {
+    return value ? "true" : "false";
+  }
+
+  @Override
+  boolean isMemoKey() {
+    return true;
+  }
+
+  @Override
+  int memoHash() {
+    return Boolean.hashCode(value);
+  }
+}
@@ -0,0 +1,91 @@
+package CSE_Machine;
+
+import java.util.Arrays;
+
+import SCANNER.SymbolTable;
+
+// BuiltIn class represents the predefined functions of RPAL (and Y*) as values.
+// They are found by the SymbolTable id of their name, and applied by switching
+// on their Function.
+public final class BuiltIn extends Value {
+  // Function enum tells which predefined function a BuiltIn is; some have two names
+  public enum Function {
+    ISINTEGER, ISSTRING, ISTUPLE, ISDUMMY, ISTRUTHVALUE, ISFUNCTION, ITOS, ORDER, CONC, STERN, STEM, NULL, PRINT,
+    NEG, YSTAR
+  }
+
+  private static BuiltIn[] bySymbol = new BuiltIn[0];
+
+  public static final BuiltIn YSTAR = new BuiltIn("Y*", Function.YSTAR, null);
+
+  static {
+    add("Isinteger", Function.ISINTEGER);
+    add("Isstring", Function.ISSTRING);
+    add("Istuple", Function.ISTUPLE);
+    add("Isdummy", Function.ISDUMMY);
+    add("Istruthvalue", Function.ISTRUTHVALUE);
+    add("Isfunction", Function.ISFUNCTION);
+    add("ItoS", Function.ITOS);
+    add("Order", Function.ORDER);
+    add("Conc", Function.CONC);
+    add("conc", Function.CONC);
+    add("Stern", Function.STERN);
+    add("Stem", Function.STEM);
+    add("Null", Function.NULL);
+    add("Print", Function.PRINT);
+    add("print", Function.PRINT);
+    add("neg", Function.NEG);
+  }
+
+  private final String name;
+  private final Function function;
+  private final Value argument; // first argument of a partially applied Conc, or null
+
+  private BuiltIn(String name, Function function, Value argument) {
+    this.name = name;
+    this.function = function;
+    this.argument = argument;
+  }
+
+  private static void add(String name, Function function) {
+    int symbol = SymbolTable.intern(name);
+    if (symbol >= bySymbol.length)
+      bySymbol = Arrays.copyOf(bySymbol, symbol + 1);
+    bySymbol[symbol] = new BuiltIn(name, function, null);
+  }
+
+  // Method to get the built-in function whose name has the given SymbolTable id, or null if there is none
+  public static BuiltIn lookup(int symbol) {
+    return symbol >= 0 && symbol < bySymbol.length ? bySymbol[symbol] : null;
+  }
+
+  // Method to get the built-in function with the given name, or null if there is none
+  public static BuiltIn lookup(String name) {
+    return lookup(SymbolTable.intern(name));
+  }
+
+  // Getter method for the name of the built-in function
+  public String getName() {
+    return name;
+  }
+
+  // Getter method for the predefined function this is
+  public Function getFunction() {
+    return function;
+  }
+
+  // Method to get this built-in function with its first argument supplied
+  BuiltIn bind(Value argument) {
+    return new BuiltIn(name, function, argument);
+  }
+
+  // Getter method for the argument supplied by bind, or null if there is none
+  Value getArgument() {
+    return argument;
+  }
+
+  @Override
+  public String getValue() {
+    return name;
+  }
+}
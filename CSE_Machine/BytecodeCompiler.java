@@ -0,0 +1,211 @@
+package CSE_Machine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// BytecodeCompiler class turns the control structures built by AST.createDeltas
+// into bytecode for the BytecodeMachine. A control structure is evaluated from
+// its top down, so it is compiled from its last element to its first; Beta
+// nodes become conditional jumps over the code of their THEN and ELSE arms.
+class BytecodeCompiler {
+  private int[] code;
+  private int[] lines;
+  private int length;
+  private List<Object> constants;
+  private ArrayDeque<Delta> pendingDeltas;
+
+  // Method to compile the root delta and every delta nested in it, indexed by Delta.getIndex()
+  CompiledDelta[] compile(Delta rootDelta) {
+    List<CompiledDelta> program = new ArrayList<CompiledDelta>();
+    pendingDeltas = new ArrayDeque<Delta>();
+    pendingDeltas.add(rootDelta);
+    while (!pendingDeltas.isEmpty()) {
+      Delta delta = pendingDeltas.pop();
+      while (program.size() <= delta.getIndex())
+        program.add(null);
+      program.set(delta.getIndex(), compileDelta(delta));
+    }
+    return program.toArray(new CompiledDelta[0]);
+  }
+
+  private CompiledDelta compileDelta(Delta delta) {
+    code = new int[16];
+    lines = new int[16];
+    length = 0;
+    constants = new ArrayList<Object>();
+
+    compileCtrlStruct(delta.getCtrlStruct());
+    emit(Opcode.RETURN, 0);
+
+    return new CompiledDelta(delta, Arrays.copyOf(code, length), Arrays.copyOf(lines, length), constants.toArray());
+  }
+
+  // Method to compile a control structure and the arms of its conditionals.
+  // The arms still being compiled are kept on an explicit stack rather than
+  // compiled by recursion, so that no depth of nested conditionals can
+  // overflow the Java stack.
+  private void compileCtrlStruct(List<ASTNode> ctrlStruct) {
+    ArrayDeque<Arm> arms = new ArrayDeque<Arm>();
+    arms.push(new Arm(ctrlStruct, null, -1));
+    while (!arms.isEmpty()) {
+      Arm arm = arms.peek();
+      if (arm.next >= 0) {
+        ASTNode node = arm.elements.get(arm.next--);
+        if (node.getType() != ASTNodeType.BETA) {
+          compileNode(node);
+          continue;
+        }
+        // the condition has already been compiled, as it sits above the Beta
+        Beta beta = (Beta) node;
+        emit(Opcode.JUMP_IF_FALSE, beta.getSourceLineNumber());
+        int elseJump = length;
+        emitOperand(0);
+        arms.push(new Arm(beta.getTHEN(), beta, elseJump));
+        continue;
+      }
+      arms.pop();
+      if (arm.thenOf != null) {
+        // the THEN arm jumps over the ELSE arm, which the condition jumps to
+        emit(Opcode.JUMP, arm.thenOf.getSourceLineNumber());
+        int endJump = length;
+        emitOperand(0);
+        code[arm.jump] = length;
+        arms.push(new Arm(arm.thenOf.getELSE(), null, endJump));
+      } else if (arm.jump >= 0) {
+        code[arm.jump] = length; // the end of an ELSE arm
+      }
+    }
+  }
+
+  private void compileNode(ASTNode node) {
+    int line = node.getSourceLineNumber();
+    switch (node.getType()) {
+      case LITERAL:
+        emit(Opcode.CONST, line);
+        emitOperand(constant(((Literal) node).getLiteralValue()));
+        break;
+      case ADDRESS:
+        emit(Opcode.LOAD, line);
+        emitOperand(((Address) node).getDepth());
+        emitOperand(((Address) node).getSlot());
+        break;
+      case IDENTIFIER:
+        emit(Opcode.UNDECLARED, line);
+        emitOperand(constant(node.getValue()));
+        break;
+      case DELTA:
+        pendingDeltas.add((Delta) node);
+        emit(Opcode.CLOSURE, line);
+        emitOperand(constant(node));
+        break;
+      case RECDELTA:
+        pendingDeltas.add(((RecDelta) node).getDelta());
+        emit(Opcode.REC_CLOSURE, line);
+        emitOperand(constant(((RecDelta) node).getDelta()));
+        break;
+      case TAU:
+        emit(Opcode.TUPLE, line);
+        emitOperand(((Tau) node).getSize());
+        break;
+      case GAMMA:
+        emit(Opcode.APPLY, line);
+        break;
+      case NOT:
+        emit(Opcode.NOT, line);
+        break;
+      case NEG:
+        emit(Opcode.NEG, line);
+        break;
+      case PLUS:
+        emit(Opcode.PLUS, line);
+        break;
+      case MINUS:
+        emit(Opcode.MINUS, line);
+        break;
+      case MULT:
+        emit(Opcode.MULT, line);
+        break;
+      case DIV:
+        emit(Opcode.DIV, line);
+        break;
+      case EXP:
+        emit(Opcode.EXP, line);
+        break;
+      case LS:
+        emit(Opcode.LS, line);
+        break;
+      case LE:
+        emit(Opcode.LE, line);
+        break;
+      case GR:
+        emit(Opcode.GR, line);
+        break;
+      case GE:
+        emit(Opcode.GE, line);
+        break;
+      case EQ:
+        emit(Opcode.EQ, line);
+        break;
+      case NE:
+        emit(Opcode.NE, line);
+        break;
+      case OR:
+        emit(Opcode.OR, line);
+        break;
+      case AND:
+        emit(Opcode.AND, line);
+        break;
+      case AUG:
+        emit(Opcode.AUG, line);
+        break;
+      default:
+        throw new IllegalArgumentException("Cannot compile \"" + node.getType() + "\"");
+    }
+  }
+
+  private int constant(Object value) {
+    constants.add(value);
+    return constants.size() - 1;
+  }
+
+  private void emit(int opcode, int line) {
+    ensureCapacity();
+    lines[length] = line;
+    code[length++] = opcode;
+  }
+
+  private void emitOperand(int operand) {
+    ensureCapacity();
+    code[length++] = operand;
+  }
+
+  private void ensureCapacity() {
+    if (length == code.length) {
+      code = Arrays.copyOf(code, length * 2);
+      lines = Arrays.copyOf(lines, length * 2);
+    }
+  }
+
+  // Arm class is a control structure being compiled, from its last element to
+  // its first. thenOf is the Beta whose THEN arm it is, if it is one, and jump
+  // is the operand patched when it ends: the else jump of a THEN arm, the end
+  // jump of an ELSE arm, or -1 for the body of a delta.
+  private static class Arm {
+    final List<ASTNode> elements;
+    final Beta thenOf;
+    final int jump;
+    int next;
+
+    Arm(List<ASTNode> elements, Beta thenOf, int jump) {
+      this.elements = elements;
+      this.thenOf = thenOf;
+      this.jump = jump;
+      next = elements.size() - 1;
+    }
+  }
+}
@@ -0,0 +1,340 @@
+package CSE_Machine;
+
+import java.util.Arrays;
+
+import PARSER.AST;
+import PARSER.ASTNodeType;
+
+// BytecodeMachine class evaluates a program compiled by BytecodeCompiler. It is a
+// single switch-dispatch loop over the int[] code of the current delta, with an
+// explicit value stack and an explicit stack of return frames, so like the CSE
+// machine it never recurses on RPAL function application.
+//
+// With the JIT enabled, deltas that become hot are translated to JVM bytecode
+// by JitCompiler. Compiled deltas are called as Java methods, so the program
+// then runs on a thread with a large Java stack.
+public class BytecodeMachine {
+  // Code for RULE 13: with rand, the eta and its closure on the stack, apply the
+  // closure to the eta, then apply the result to rand
+  private static final CompiledDelta ETA_APPLY = new CompiledDelta(null,
+      new int[] { Opcode.APPLY, Opcode.APPLY, Opcode.RETURN }, new int[3], new Object[0]);
+
+  private static final long JIT_STACK_SIZE = 1L << 31;
+
+  // Returned by JIT-compiled code for a closure applied in tail position; the
+  // call itself is left in tailIndex and tailEnv for the caller to run
+  private static final Value TAIL_CALL = new Value() {
+    @Override
+    public String getValue() {
+      return "[tail call]";
+    }
+  };
+
+  private CompiledDelta[] program;
+  private int rootIndex;
+
+  private Value[] stack = new Value[64];
+  private int sp;
+
+  private CompiledDelta[] frameCode = new CompiledDelta[64];
+  private int[] framePc = new int[64];
+  private Environment[] frameEnv = new Environment[64];
+  private int fp;
+
+  private JitCompiler jit; // null unless the JIT is enabled
+  private int tailIndex;
+  private Environment tailEnv;
+  private long applications; // number of APPLY instructions executed so far
+  private MemoCache memo; // null unless memoization is enabled
+
+  // Constructor compiles the deltas of the given AST
+  public BytecodeMachine(AST ast) {
+    this(ast, false);
+  }
+
+  // Constructor compiles the deltas of the given AST, optionally enabling the JIT
+  public BytecodeMachine(AST ast, boolean enableJit) {
+    this(ast, enableJit, null);
+  }
+
+  // Constructor compiles the deltas of the given AST, optionally enabling the
+  // JIT, and memoizes rec functions in the given cache unless it is null
+  public BytecodeMachine(AST ast, boolean enableJit, MemoCache memo) {
+    this(CSEMachine.createDeltas(ast), enableJit, memo);
+  }
+
+  // Constructor compiles the deltas of a program, such as one loaded by
+  // ProgramCache, with the same options
+  public BytecodeMachine(Delta rootDelta, boolean enableJit, MemoCache memo) {
+    program = new BytecodeCompiler().compile(rootDelta);
+    rootIndex = rootDelta.getIndex();
+    if (enableJit)
+      jit = new JitCompiler(this, program);
+    this.memo = memo;
+  }
+
+  // Memoized applications are run as nested calls, so they need the large stack too
+  public void evaluateProgram() {
+    if (jit == null && memo == null) {
+      run(program[rootIndex], new Environment(null, 0));
+      return;
+    }
+
+    Thread thread = new Thread(null, () -> run(program[rootIndex], new Environment(null, 0)), "rpal",
+        JIT_STACK_SIZE);
+    thread.start();
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // Getter method for the number of applications executed so far
+  public long getApplications() {
+    return applications;
+  }
+
+  // Method used by JIT-compiled code to apply rator to rand (RULES 3, 4 and 10-13)
+  Value apply(Value rand, Value rator, int line) {
+    applications++;
+    if (rator instanceof Closure) {
+      Closure closure = (Closure) rator;
+      MemoCache.Call call = memo == null ? null : memo.call(closure, rand);
+      if (call != null)
+        return applyMemoized(call, closure, rand, line);
+      return call(closure, rand, line);
+    } else if (rator instanceof Eta) {
+      return apply(rand, apply(rator, ((Eta) rator).getClosure(), line), line);
+    }
+    return Operations.applyValue(rator, rand, line);
+  }
+
+  // Method used by JIT-compiled code to apply rator to rand in tail position.
+  // A closure is not called here but returned as TAIL_CALL, so a tail-recursive
+  // loop does not grow the Java stack.
+  Value tailApply(Value rand, Value rator, int line) {
+    if (rator instanceof Eta) {
+      applications++;
+      rator = apply(rator, ((Eta) rator).getClosure(), line); // RULE 13
+    }
+    if (!(rator instanceof Closure) || (memo != null && memo.call((Closure) rator, rand) != null))
+      return apply(rand, rator, line); // a memoized result is stored on return, so it is no tail call
+    applications++;
+
+    Closure closure = (Closure) rator;
+    tailEnv = Operations.bindArguments(closure, rand, line);
+    tailIndex = closure.getDelta().getIndex();
+    return TAIL_CALL;
+  }
+
+  // Method to run the body of a closure applied to rand until it returns
+  private Value call(Closure closure, Value rand, int line) {
+    Environment newEnv = Operations.bindArguments(closure, rand, line);
+    int index = closure.getDelta().getIndex();
+    JitFunction compiled = jit == null ? null : jit.compiledCode(index);
+    return runTailCalls(compiled != null ? compiled.call(newEnv) : run(program[index], newEnv));
+  }
+
+  // Method to get the result of a memoized application, from the cache or by running it
+  private Value applyMemoized(MemoCache.Call call, Closure closure, Value rand, int line) {
+    Value result = memo.lookup(call);
+    if (result == null) {
+      result = call(closure, rand, line);
+      memo.store(call, result);
+    }
+    return result;
+  }
+
+  // Method to run the tail calls left by JIT-compiled code until one returns a value
+  private Value runTailCalls(Value result) {
+    while (result == TAIL_CALL) {
+      int index = tailIndex;
+      Environment env = tailEnv;
+      tailEnv = null;
+      JitFunction compiled = jit.compiledCode(index);
+      result = compiled != null ? compiled.call(env) : run(program[index], env);
+    }
+    return result;
+  }
+
+  // Method to run the given code until it returns, and get the value it returns.
+  // It is re-entered from JIT-compiled code, so it only returns from its own frame.
+  private Value run(CompiledDelta start, Environment startEnv) {
+    CompiledDelta current = start;
+    int[] code = current.code;
+    int pc = 0;
+    Environment env = startEnv;
+    int baseFp = fp;
+
+    while (true) {
+      int op = code[pc];
+      int line = current.lines[pc];
+      pc++;
+      switch (op) {
+        case Opcode.CONST:
+          push((Value) current.constants[code[pc++]]);
+          break;
+        case Opcode.LOAD:
+          push(env.lookup(code[pc], code[pc + 1])); // RULE 1
+          pc += 2;
+          break;
+        case Opcode.UNDECLARED:
+          SyntaxError.printError(line, "identifier is not declared\"" + current.constants[code[pc]] + "\"");
+          break;
+        case Opcode.CLOSURE:
+          push(new Closure((Delta) current.constants[code[pc++]], env)); // RULE 2
+          break;
+        case Opcode.REC_CLOSURE:
+          push(Closure.recursive((Delta) current.constants[code[pc++]], env));
+          break;
+        case Opcode.TUPLE: {
+          Value[] elements = new Value[code[pc++]];
+          for (int i = 0; i < elements.length; i++)
+            elements[i] = pop();
+          push(Tuple.of(elements));
+          break;
+        }
+        case Opcode.JUMP_IF_FALSE: {
+          Value condition = pop();
+          if (!(condition instanceof BoolValue))
+            SyntaxError.printError(line, "Expecting a truthvalue; found \"" + condition.getValue() + "\"");
+          pc = condition == BoolValue.TRUE ? pc + 1 : code[pc];
+          break;
+        }
+        case Opcode.JUMP:
+          pc = code[pc];
+          break;
+        case Opcode.RETURN:
+          if (fp == baseFp)
+            return pop();
+          fp--;
+          current = frameCode[fp];
+          code = current.code;
+          pc = framePc[fp];
+          env = frameEnv[fp];
+          frameEnv[fp] = null;
+          break;
+        case Opcode.APPLY: {
+          Value rator = pop();
+          Value rand = pop();
+          applications++;
+          MemoCache.Call call = memo != null && rator instanceof Closure ? memo.call((Closure) rator, rand) : null;
+          if (call != null) {
+            push(applyMemoized(call, (Closure) rator, rand, line));
+          } else if (rator instanceof Closure) {
+            // RULE 4: save the return point, then run the body of the closure
+            Closure closure = (Closure) rator;
+            Environment newEnv = Operations.bindArguments(closure, rand, line);
+            int index = closure.getDelta().getIndex();
+            JitFunction compiled = jit == null ? null : jit.compiledCode(index);
+            if (compiled != null) {
+              push(runTailCalls(compiled.call(newEnv)));
+            } else {
+              // An application followed by RETURN is a tail call; it returns
+              // straight to the caller's caller
+              if (code[pc] != Opcode.RETURN)
+                pushFrame(current, pc, env);
+              current = program[index];
+              code = current.code;
+              pc = 0;
+              env = newEnv;
+            }
+          } else if (rator instanceof Eta) {
+            // RULE 13
+            push(rand);
+            push(rator);
+            push(((Eta) rator).getClosure());
+            pushFrame(current, pc, env);
+            current = ETA_APPLY;
+            code = current.code;
+            pc = 0;
+          } else {
+            push(Operations.applyValue(rator, rand, line)); // RULES 3, 10 and 12
+          }
+          break;
+        }
+        case Opcode.NOT:
+          push(Operations.not(pop(), line));
+          break;
+        case Opcode.NEG:
+          push(Operations.neg(pop(), line));
+          break;
+        case Opcode.PLUS:
+          binary(ASTNodeType.PLUS, line);
+          break;
+        case Opcode.MINUS:
+          binary(ASTNodeType.MINUS, line);
+          break;
+        case Opcode.MULT:
+          binary(ASTNodeType.MULT, line);
+          break;
+        case Opcode.DIV:
+          binary(ASTNodeType.DIV, line);
+          break;
+        case Opcode.EXP:
+          binary(ASTNodeType.EXP, line);
+          break;
+        case Opcode.LS:
+          binary(ASTNodeType.LS, line);
+          break;
+        case Opcode.LE:
+          binary(ASTNodeType.LE, line);
+          break;
+        case Opcode.GR:
+          binary(ASTNodeType.GR, line);
+          break;
+        case Opcode.GE:
+          binary(ASTNodeType.GE, line);
+          break;
+        case Opcode.EQ:
+          binary(ASTNodeType.EQ, line);
+          break;
+        case Opcode.NE:
+          binary(ASTNodeType.NE, line);
+          break;
+        case Opcode.OR:
+          binary(ASTNodeType.OR, line);
+          break;
+        case Opcode.AND:
+          binary(ASTNodeType.AND, line);
+          break;
+        case Opcode.AUG:
+          binary(ASTNodeType.AUG, line);
+          break;
+        default:
+          throw new IllegalStateException("Unknown opcode " + op);
+      }
+    }
+  }
+
+  private void binary(ASTNodeType type, int line) {
+    Value rand_1 = pop();
+    Value rand_2 = pop();
+    push(Operations.binary(type, rand_1, rand_2, line));
+  }
+
+  private void push(Value value) {
+    if (sp == stack.length)
+      stack = Arrays.copyOf(stack, sp * 2);
+    stack[sp++] = value;
+  }
+
+  private Value pop() {
+    Value value = stack[--sp];
+    stack[sp] = null;
+    return value;
+  }
+
+  private void pushFrame(CompiledDelta code, int pc, Environment env) {
+    if (fp == frameCode.length) {
+      frameCode = Arrays.copyOf(frameCode, fp * 2);
+      framePc = Arrays.copyOf(framePc, fp * 2);
+      frameEnv = Arrays.copyOf(frameEnv, fp * 2);
+    }
+    frameCode[fp] = code;
+    framePc[fp] = pc;
+    frameEnv[fp] = env;
+    fp++;
+  }
+}
@@ -0,0 +1,171 @@
+package CSE_Machine;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+// ClassFileWriter class assembles the bytes of a JVM class file for the JIT.
+// It writes class file version 49, which the JVM verifies by type inference,
+// so the generated methods need no StackMapTable. Only the constant pool
+// entries, fields and methods the JIT actually emits are supported.
+final class ClassFileWriter {
+  static final int ACC_PUBLIC = 0x0001;
+  static final int ACC_STATIC = 0x0008;
+  static final int ACC_FINAL = 0x0010;
+  static final int ACC_SUPER = 0x0020;
+
+  private static final int CLASS_FILE_VERSION = 49;
+
+  private final ByteArrayOutputStream constantPool = new ByteArrayOutputStream();
+  private final Map<String, Integer> constantIndex = new HashMap<String, Integer>();
+  private int constantCount = 1;
+  private final ByteArrayOutputStream fields = new ByteArrayOutputStream();
+  private int fieldCount;
+  private final ByteArrayOutputStream methods = new ByteArrayOutputStream();
+  private int methodCount;
+
+  int utf8(String value) {
+    Integer index = constantIndex.get("U" + value);
+    if (index != null)
+      return index;
+    byte[] bytes = modifiedUtf8(value);
+    constantPool.write(1);
+    u2(constantPool, bytes.length);
+    constantPool.write(bytes, 0, bytes.length);
+    return addConstant("U" + value, 1);
+  }
+
+  int classRef(String internalName) {
+    return constantRef("C" + internalName, 7, utf8(internalName), -1);
+  }
+
+  int string(String value) {
+    return constantRef("S" + value, 8, utf8(value), -1);
+  }
+
+  int integer(int value) {
+    Integer index = constantIndex.get("I" + value);
+    if (index != null)
+      return index;
+    constantPool.write(3);
+    u4(constantPool, value);
+    return addConstant("I" + value, 1);
+  }
+
+  int fieldRef(String owner, String name, String descriptor) {
+    return memberRef("F", 9, owner, name, descriptor);
+  }
+
+  int methodRef(String owner, String name, String descriptor) {
+    return memberRef("M", 10, owner, name, descriptor);
+  }
+
+  int interfaceMethodRef(String owner, String name, String descriptor) {
+    return memberRef("N", 11, owner, name, descriptor);
+  }
+
+  void addField(int access, String name, String descriptor) {
+    u2(fields, access);
+    u2(fields, utf8(name));
+    u2(fields, utf8(descriptor));
+    u2(fields, 0); // attributes
+    fieldCount++;
+  }
+
+  void addMethod(int access, String name, String descriptor, byte[] code, int maxStack, int maxLocals) {
+    u2(methods, access);
+    u2(methods, utf8(name));
+    u2(methods, utf8(descriptor));
+    u2(methods, 1); // attributes: Code
+    u2(methods, utf8("Code"));
+    u4(methods, 12 + code.length);
+    u2(methods, maxStack);
+    u2(methods, maxLocals);
+    u4(methods, code.length);
+    methods.write(code, 0, code.length);
+    u2(methods, 0); // exception table
+    u2(methods, 0); // attributes
+    methodCount++;
+  }
+
+  byte[] toByteArray(int access, String thisClass, String superClass, String[] interfaces) {
+    int thisIndex = classRef(thisClass);
+    int superIndex = classRef(superClass);
+    int[] interfaceIndexes = new int[interfaces.length];
+    for (int i = 0; i < interfaces.length; i++)
+      interfaceIndexes[i] = classRef(interfaces[i]);
+
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    u4(out, 0xCAFEBABE);
+    u2(out, 0); // minor version
+    u2(out, CLASS_FILE_VERSION);
+    u2(out, constantCount);
+    out.writeBytes(constantPool.toByteArray());
+    u2(out, access);
+    u2(out, thisIndex);
+    u2(out, superIndex);
+    u2(out, interfaceIndexes.length);
+    for (int index : interfaceIndexes)
+      u2(out, index);
+    u2(out, fieldCount);
+    out.writeBytes(fields.toByteArray());
+    u2(out, methodCount);
+    out.writeBytes(methods.toByteArray());
+    u2(out, 0); // attributes
+    return out.toByteArray();
+  }
+
+  private int constantRef(String key, int tag, int first, int second) {
+    Integer index = constantIndex.get(key);
+    if (index != null)
+      return index;
+    constantPool.write(tag);
+    u2(constantPool, first);
+    if (second >= 0)
+      u2(constantPool, second);
+    return addConstant(key, 1);
+  }
+
+  private int memberRef(String kind, int tag, String owner, String name, String descriptor) {
+    int classIndex = classRef(owner);
+    int nameAndType = constantRef("T" + name + ":" + descriptor, 12, utf8(name), utf8(descriptor));
+    return constantRef(kind + owner + "." + name + ":" + descriptor, tag, classIndex, nameAndType);
+  }
+
+  private int addConstant(String key, int slots) {
+    int index = constantCount;
+    constantIndex.put(key, index);
+    constantCount += slots;
+    return index;
+  }
+
+  private static byte[] modifiedUtf8(String value) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    for (int i = 0; i < value.length(); i++) {
+      char c = value.charAt(i);
+      if (c >= 1 && c <= 0x7F)
+        out.write(c);
+      else if (c <= 0x7FF) {
+        out.write(0xC0 | (c >> 6));
+        out.write(0x80 | (c & 0x3F));
+      } else {
+        out.write(0xE0 | (c >> 12));
+        out.write(0x80 | ((c >> 6) & 0x3F));
+        out.write(0x80 | (c & 0x3F));
+      }
+    }
+    return out.toByteArray();
+  }
+
+  static void u2(ByteArrayOutputStream out, int value) {
+    out.write(value >>> 8);
+    out.write(value);
+  }
+
+  static void u4(ByteArrayOutputStream out, int value) {
+    out.write(value >>> 24);
+    out.write(value >>> 16);
+    out.write(value >>> 8);
+    out.write(value);
+  }
+}
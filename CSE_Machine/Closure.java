@@ -0,0 +1,49 @@
+package CSE_Machine;
+
+// Closure class pairs the shared code of a lambda (its Delta) with the
+// environment it was evaluated in (RULE 2)
+public final class Closure extends Value {
+  private final Delta delta;
+  private final Environment env;
+  private final boolean recursive; // created by a rec binding
+
+  public Closure(Delta delta, Environment env) {
+    this(delta, env, false);
+  }
+
+  private Closure(Delta delta, Environment env, boolean recursive) {
+    this.delta = delta;
+    this.env = env;
+    this.recursive = recursive;
+  }
+
+  // Method to create the closure a rec binding of a function evaluates to:
+  // a closure over delta in a new one-slot environment, below env, that binds
+  // the function's name to the closure itself (RULES 2, 12 and 13 at once)
+  static Closure recursive(Delta delta, Environment env) {
+    Environment recEnv = new Environment(env, 1);
+    Closure closure = new Closure(delta, recEnv, true);
+    recEnv.bind(0, closure);
+    return closure;
+  }
+
+  // Getter method for the delta holding the code of the closure
+  public Delta getDelta() {
+    return delta;
+  }
+
+  // Getter method for the environment the closure was created in
+  public Environment getEnv() {
+    return env;
+  }
+
+  // Method to check whether the closure is a function bound by rec
+  boolean isRecursive() {
+    return recursive;
+  }
+
+  @Override
+  public String getValue() {
+    return "[lambda closure: " + delta.getBoundVarName(0) + ": " + delta.getIndex() + "]";
+  }
+}
@@ -0,0 +1,17 @@
+package CSE_Machine;
+
+// CompiledDelta class holds the bytecode of one delta: the instruction stream,
+// the source line of every instruction and the constant pool it refers to
+final class CompiledDelta {
+  final Delta delta;
+  final int[] code;
+  final int[] lines; // lines[pc] is the source line of the instruction starting at pc
+  final Object[] constants;
+
+  CompiledDelta(Delta delta, int[] code, int[] lines, Object[] constants) {
+    this.delta = delta;
+    this.code = code;
+    this.lines = lines;
+    this.constants = constants;
+  }
+}
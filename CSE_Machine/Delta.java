@@ -1,50 +1,46 @@
 package CSE_Machine;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 import java.util.Stack;
 
 import PARSER.ASTNode;
 import PARSER.ASTNodeType;
+import SCANNER.SymbolTable;
 
 // Delta class representing a delta node in the abstract syntax tree
 public class Delta extends ASTNode {
-  private List<String> boundVars;  // List of bound variables
-  private Environment linkedEnv; 
+  private int[] boundVars = new int[1]; // SymbolTable ids of the bound variables
+  private int boundVarCount;
   private Stack<ASTNode> body;
   private int index;
 
   public Delta() {
     setType(ASTNodeType.DELTA);
-    boundVars = new ArrayList<String>();
   }
-  
-  // Method to accept a NodeCopier visitor
 
-  public Delta accept(NodeCopier nodeCopier) {
-    return nodeCopier.getDeltaCopy(this);
-  }
-  
-  // Override method to get the value of the delta node
-  @Override
-  public String getValue() {
-    return "[lambda closure: " + boundVars.get(0) + ": " + index + "]";
+  // Method to append a bound variable, given by its SymbolTable id
+  public void appendBddVar(int symbol) {
+    if (boundVarCount == boundVars.length)
+      boundVars = Arrays.copyOf(boundVars, boundVarCount * 2);
+    boundVars[boundVarCount++] = symbol;
   }
 
-  public List<String> getBoundVars() {
-    return boundVars;
+  // Getter method for the number of bound variables
+  public int getBoundVarCount() {
+    return boundVarCount;
   }
-  
-  // Method to append a bound variable to the list
-  public void appendBddVars(String boundVar) {
-    boundVars.add(boundVar);
+
+  // Getter method for the SymbolTable id of the bound variable at the given position
+  public int getBoundVar(int position) {
+    return boundVars[position];
   }
-  
-  // Setter method for the list of bound variables
-  public void setBoundVars(List<String> boundVars) {
-    this.boundVars = boundVars;
+
+  // Getter method for the name of the bound variable at the given position, or
+  // null if it has none, as for the () of "fn () . E"
+  public String getBoundVarName(int position) {
+    return boundVars[position] < 0 ? null : SymbolTable.name(boundVars[position]);
   }
-  
+
   // Getter method for the body of the delta node
   public Stack<ASTNode> getCtrlStruct() {
     return body;
@@ -62,13 +58,4 @@ public class Delta extends ASTNode {
   public void setIndex(int index) {
     this.index = index;
   }
-
-  public Environment getRunningEnv() {
-    return linkedEnv;
-  }
-  
-  // Setter method for the running environment linked to the delta node
-  public void setLinkedEnv(Environment linkedEnv) {
-    this.linkedEnv = linkedEnv;
-  }
 }
@@ -0,0 +1,14 @@
+package CSE_Machine;
+
+// DummyValue class represents the RPAL dummy value; DUMMY is the only instance
+public final class DummyValue extends Value {
+  public static final DummyValue DUMMY = new DummyValue();
+
+  private DummyValue() {
+  }
+
+  @Override
+  public String getValue() {
+    return "dummy";
+  }
+}
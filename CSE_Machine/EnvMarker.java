@@ -0,0 +1,20 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// EnvMarker class is pushed on the control stack when a closure is applied (RULE 4);
+// popping it restores the environment that was current before the call (RULE 5)
+public class EnvMarker extends ASTNode {
+  private final Environment env;
+
+  public EnvMarker(Environment env) {
+    setType(ASTNodeType.ENV);
+    this.env = env;
+  }
+
+  // Getter method for the environment to restore
+  public Environment getEnv() {
+    return env;
+  }
+}
@@ -1,20 +1,19 @@
 package CSE_Machine;
 
-import java.util.HashMap;
-import java.util.Map;
-
-import PARSER.ASTNode;
-
 // Environment class representing a lexical environment for variable bindings
+// Identifiers are resolved to (depth, slot) addresses before evaluation, so an
+// environment is just a fixed-size array of values sized from the bound
+// variables of the delta it belongs to.
 public class Environment {
     // Parent environment
-    private Environment parent;
-    // Map to store variable bindings
-    private Map<String, ASTNode> name_Value_Map;
+    private final Environment parent;
+    // Values of the bound variables, in the order of Delta.getBoundVar()
+    private final Value[] slots;
 
     // Constructor to initialize an Environment object
-    public Environment() {
-        name_Value_Map = new HashMap<String, ASTNode>();
+    public Environment(Environment parent, int size) {
+        this.parent = parent;
+        this.slots = new Value[size];
     }
 
     // Getter method for the parent environment
@@ -22,29 +21,18 @@ public class Environment {
         return parent;
     }
 
-    // Setter method for the parent environment
-    public void setParent(Environment parent) {
-        this.parent = parent;
-    }
-
-    // Method to look up a variable binding in the environment
-    public ASTNode lookup(String key) {
-        ASTNode retValue = null;
-        Map<String, ASTNode> map = name_Value_Map;
-
-        retValue = map.get(key);
-
-        if (retValue != null)
-            return retValue.accept(new NodeCopier());
-
-        if (parent != null)
-            return parent.lookup(key);
-        else
-            return null;
+    // Method to look up a variable binding by its lexical address
+    // Bound values are never mutated by the CSE machine, so they are shared
+    // rather than copied.
+    public Value lookup(int depth, int slot) {
+        Environment env = this;
+        for (int i = 0; i < depth; i++)
+            env = env.parent;
+        return env.slots[slot];
     }
 
-    // Method to add a variable binding to the environment
-    public void addMapping(String key, ASTNode value) {
-        name_Value_Map.put(key, value);
+    // Method to bind a value to a slot of this environment
+    public void bind(int slot, Value value) {
+        slots[slot] = value;
     }
 }
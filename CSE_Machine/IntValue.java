@@ -0,0 +1,172 @@
+package CSE_Machine;
+
+import java.math.BigInteger;
+
+// IntValue class represents an RPAL integer, which has arbitrary precision
+// Integers that fit in a long are held as a primitive long and operated on with
+// Math.*Exact; only when an operation overflows is the result promoted to a
+// BigInteger. Results are normalised back to the long form whenever they fit,
+// so a value is big if and only if it is outside the range of a long.
+public final class IntValue extends Value {
+  // Small integers are shared, the same way java.lang.Integer caches them
+  private static final int CACHE_LOW = -128;
+  private static final int CACHE_HIGH = 1024;
+  private static final IntValue[] cache = new IntValue[CACHE_HIGH - CACHE_LOW + 1];
+
+  static {
+    for (int i = 0; i < cache.length; i++)
+      cache[i] = new IntValue(CACHE_LOW + i, null);
+  }
+
+  private final long value;
+  private final BigInteger big; // null unless the value does not fit in a long
+
+  private IntValue(long value, BigInteger big) {
+    this.value = value;
+    this.big = big;
+  }
+
+  // Method to get the IntValue for the given long, reusing cached instances
+  public static IntValue valueOf(long value) {
+    if (value >= CACHE_LOW && value <= CACHE_HIGH)
+      return cache[(int) value - CACHE_LOW];
+    return new IntValue(value, null);
+  }
+
+  // Method to get the IntValue for the given BigInteger
+  public static IntValue valueOf(BigInteger value) {
+    if (value.bitLength() < Long.SIZE)
+      return valueOf(value.longValue());
+    return new IntValue(0, value);
+  }
+
+  // Method to get the IntValue for a decimal integer literal
+  public static IntValue parse(String digits) {
+    if (digits.length() < 19) // at most 18 digits always fits in a long
+      return valueOf(Long.parseLong(digits));
+    return valueOf(new BigInteger(digits));
+  }
+
+  // Method to check whether the value fits in a long
+  public boolean isSmall() {
+    return big == null;
+  }
+
+  // Getter method for the primitive value; only meaningful when isSmall()
+  public long longValue() {
+    return value;
+  }
+
+  private BigInteger toBigInteger() {
+    return big != null ? big : BigInteger.valueOf(value);
+  }
+
+  public IntValue add(IntValue other) {
+    if (big == null && other.big == null) {
+      try {
+        return valueOf(Math.addExact(value, other.value));
+      } catch (ArithmeticException e) {
+        // overflow: fall through to BigInteger
+      }
+    }
+    return valueOf(toBigInteger().add(other.toBigInteger()));
+  }
+
+  public IntValue subtract(IntValue other) {
+    if (big == null && other.big == null) {
+      try {
+        return valueOf(Math.subtractExact(value, other.value));
+      } catch (ArithmeticException e) {
+        // overflow: fall through to BigInteger
+      }
+    }
+    return valueOf(toBigInteger().subtract(other.toBigInteger()));
+  }
+
+  public IntValue multiply(IntValue other) {
+    if (big == null && other.big == null) {
+      try {
+        return valueOf(Math.multiplyExact(value, other.value));
+      } catch (ArithmeticException e) {
+        // overflow: fall through to BigInteger
+      }
+    }
+    return valueOf(toBigInteger().multiply(other.toBigInteger()));
+  }
+
+  // Integer division truncates towards zero; dividing by zero throws ArithmeticException
+  public IntValue divide(IntValue other) {
+    if (big == null && other.big == null && !(value == Long.MIN_VALUE && other.value == -1))
+      return valueOf(value / other.value);
+    return valueOf(toBigInteger().divide(other.toBigInteger()));
+  }
+
+  public IntValue negate() {
+    if (big == null && value != Long.MIN_VALUE)
+      return valueOf(-value);
+    return valueOf(toBigInteger().negate());
+  }
+
+  // Exact exponentiation by squaring. A negative exponent gives the truncated
+  // quotient 1 / this ** -exponent. The powers of 0, 1 and -1, and the
+  // negative powers of any base, are small for any exponent; only a larger
+  // power with an exponent beyond the int range is too large to compute.
+  public IntValue pow(IntValue exponent) {
+    boolean negative = exponent.big != null ? exponent.big.signum() < 0 : exponent.value < 0;
+    boolean even = exponent.big != null ? !exponent.big.testBit(0) : (exponent.value & 1) == 0;
+    if (big == null && (value == 0 || value == 1 || value == -1)) {
+      if (value == 0) {
+        if (negative)
+          throw new ArithmeticException("/ by zero");
+        return valueOf(exponent.big == null && exponent.value == 0 ? 1 : 0);
+      }
+      return value == -1 && !even ? this : valueOf(1);
+    }
+    if (negative)
+      return valueOf(0);
+    if (exponent.big != null || exponent.value > Integer.MAX_VALUE)
+      throw new ArithmeticException("exponent too large");
+
+    int n = (int) exponent.value;
+    if (big == null) {
+      try {
+        long result = 1;
+        long base = value;
+        int remaining = n;
+        while (remaining > 0) {
+          if ((remaining & 1) != 0)
+            result = Math.multiplyExact(result, base);
+          remaining >>= 1;
+          if (remaining > 0)
+            base = Math.multiplyExact(base, base);
+        }
+        return valueOf(result);
+      } catch (ArithmeticException e) {
+        // overflow: fall through to BigInteger
+      }
+    }
+    return valueOf(toBigInteger().pow(n));
+  }
+
+  public int compareTo(IntValue other) {
+    if (big == null && other.big == null)
+      return Long.compare(value, other.value);
+    return toBigInteger().compareTo(other.toBigInteger());
+  }
+
+  @Override
+  public String getValue() {
+    return big != null ? big.toString() : Long.toString(value);
+  }
+
+  @Override
+  boolean isMemoKey() {
+    return true;
+  }
+
+  // A value has one form only, long or big, so equal values hash alike
+  @Override
+  int memoHash() {
+    return big != null ? big.hashCode() : Long.hashCode(value);
+  }
+}
@@ -0,0 +1,336 @@
+package CSE_Machine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// JitCompiler class translates the bytecode of hot deltas into JVM bytecode.
+// The bytecode machine is a stack machine like the JVM, so each instruction
+// maps onto a short JVM sequence over the same operand stack; operators and
+// applications call back into Operations and the BytecodeMachine. Each delta
+// becomes a hidden class implementing JitFunction, with the delta's constant
+// pool as its class data. Deltas too large for a JVM method stay interpreted.
+final class JitCompiler {
+  // Number of calls of a delta before it is compiled
+  static final int HOT_THRESHOLD = 10;
+
+  private static final int MAX_TUPLE_LOCALS = 250; // astore takes a one-byte index
+  private static final int MAX_BRANCH_OFFSET = Short.MAX_VALUE;
+
+  private static final String CLASS_NAME = "CSE_Machine/JitDelta";
+  private static final String VALUE = "CSE_Machine/Value";
+  private static final String VALUE_DESC = "L" + VALUE + ";";
+  private static final String ENVIRONMENT = "CSE_Machine/Environment";
+  private static final String MACHINE = "CSE_Machine/BytecodeMachine";
+  private static final String MACHINE_DESC = "L" + MACHINE + ";";
+  private static final String CONSTANTS_DESC = "[Ljava/lang/Object;";
+
+  // ASTNodeType names of the binary opcodes, from Opcode.PLUS on
+  private static final String[] BINARY_TYPES = { "PLUS", "MINUS", "MULT", "DIV", "EXP", "LS", "LE", "GR", "GE",
+      "EQ", "NE", "OR", "AND", "AUG" };
+
+  // JVM opcodes
+  private static final int ICONST_0 = 0x03;
+  private static final int BIPUSH = 0x10;
+  private static final int SIPUSH = 0x11;
+  private static final int LDC_W = 0x13;
+  private static final int ALOAD = 0x19;
+  private static final int ALOAD_0 = 0x2a;
+  private static final int ALOAD_1 = 0x2b;
+  private static final int AALOAD = 0x32;
+  private static final int ASTORE = 0x3a;
+  private static final int AASTORE = 0x53;
+  private static final int POP = 0x57;
+  private static final int DUP = 0x59;
+  private static final int DUP_X2 = 0x5b;
+  private static final int IFEQ = 0x99;
+  private static final int GOTO = 0xa7;
+  private static final int ARETURN = 0xb0;
+  private static final int RETURN = 0xb1;
+  private static final int GETSTATIC = 0xb2;
+  private static final int PUTSTATIC = 0xb3;
+  private static final int GETFIELD = 0xb4;
+  private static final int PUTFIELD = 0xb5;
+  private static final int INVOKEVIRTUAL = 0xb6;
+  private static final int INVOKESPECIAL = 0xb7;
+  private static final int INVOKESTATIC = 0xb8;
+  private static final int NEW = 0xbb;
+  private static final int ANEWARRAY = 0xbd;
+  private static final int CHECKCAST = 0xc0;
+
+  private final BytecodeMachine machine;
+  private final CompiledDelta[] program;
+  private final JitFunction[] compiled;
+  private final int[] invocations;
+
+  private ClassFileWriter classFile;
+  private byte[] out;
+  private int length;
+  private int maxStack;
+  private int maxLocals;
+
+  JitCompiler(BytecodeMachine machine, CompiledDelta[] program) {
+    this.machine = machine;
+    this.program = program;
+    compiled = new JitFunction[program.length];
+    invocations = new int[program.length];
+  }
+
+  // Method to get the compiled code of a delta that is about to be called, or
+  // null if it is not compiled (yet); counts the call towards HOT_THRESHOLD
+  JitFunction compiledCode(int index) {
+    JitFunction function = compiled[index];
+    if (function == null && invocations[index] < HOT_THRESHOLD && ++invocations[index] == HOT_THRESHOLD)
+      function = compiled[index] = compile(program[index]);
+    return function;
+  }
+
+  private JitFunction compile(CompiledDelta delta) {
+    classFile = new ClassFileWriter();
+    byte[] callCode = translate(delta);
+    if (callCode == null)
+      return null;
+
+    classFile.addField(ClassFileWriter.ACC_STATIC | ClassFileWriter.ACC_FINAL, "K", CONSTANTS_DESC);
+    classFile.addField(ClassFileWriter.ACC_FINAL, "machine", MACHINE_DESC);
+    classFile.addMethod(ClassFileWriter.ACC_STATIC, "<clinit>", "()V", classInitializer(), 3, 0);
+    classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "<init>", "(" + MACHINE_DESC + ")V", constructor(), 2, 2);
+    classFile.addMethod(ClassFileWriter.ACC_PUBLIC, "call", "(L" + ENVIRONMENT + ";)" + VALUE_DESC, callCode,
+        maxStack, maxLocals);
+    byte[] bytes = classFile.toByteArray(ClassFileWriter.ACC_PUBLIC | ClassFileWriter.ACC_FINAL
+        | ClassFileWriter.ACC_SUPER, CLASS_NAME, "java/lang/Object", new String[] { "CSE_Machine/JitFunction" });
+    classFile = null;
+
+    try {
+      MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClassWithClassData(bytes, delta.constants,
+          true);
+      return (JitFunction) lookup.findConstructor(lookup.lookupClass(),
+          MethodType.methodType(void.class, BytecodeMachine.class)).invoke(machine);
+    } catch (Throwable e) {
+      throw new IllegalStateException("Cannot load the JIT-compiled code of delta " + delta.delta.getIndex(), e);
+    }
+  }
+
+  // K = (Object[]) MethodHandles.classData(MethodHandles.lookup(), "_", Object[].class)
+  private byte[] classInitializer() {
+    begin();
+    emitMember(INVOKESTATIC, classFile.methodRef("java/lang/invoke/MethodHandles", "lookup",
+        "()Ljava/lang/invoke/MethodHandles$Lookup;"));
+    emitMember(LDC_W, classFile.string("_"));
+    emitMember(LDC_W, classFile.classRef(CONSTANTS_DESC));
+    emitMember(INVOKESTATIC, classFile.methodRef("java/lang/invoke/MethodHandles", "classData",
+        "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/Class;)Ljava/lang/Object;"));
+    emitMember(CHECKCAST, classFile.classRef(CONSTANTS_DESC));
+    emitMember(PUTSTATIC, classFile.fieldRef(CLASS_NAME, "K", CONSTANTS_DESC));
+    emit(RETURN);
+    return Arrays.copyOf(out, length);
+  }
+
+  private byte[] constructor() {
+    begin();
+    emit(ALOAD_0);
+    emitMember(INVOKESPECIAL, classFile.methodRef("java/lang/Object", "<init>", "()V"));
+    emit(ALOAD_0);
+    emit(ALOAD_1);
+    emitMember(PUTFIELD, classFile.fieldRef(CLASS_NAME, "machine", MACHINE_DESC));
+    emit(RETURN);
+    return Arrays.copyOf(out, length);
+  }
+
+  // Method to translate the code of a delta into the body of JitFunction.call,
+  // or get null if it does not fit in a JVM method. Local 0 is this, local 1 the
+  // environment, and the locals above are used to build tuples.
+  private byte[] translate(CompiledDelta delta) {
+    int[] code = delta.code;
+    int[] jvmOffsets = new int[code.length];
+    int[] depthAt = new int[code.length]; // stack depth at a jump target, + 1
+    List<int[]> branches = new ArrayList<int[]>(); // {JVM offset of branch, target pc}
+    int depth = 0;
+    boolean reachable = true;
+    maxStack = 0;
+    maxLocals = 2;
+    begin();
+
+    int pc = 0;
+    while (pc < code.length) {
+      if (!reachable) {
+        depth = depthAt[pc] - 1;
+        reachable = true;
+      }
+      jvmOffsets[pc] = length;
+      int op = code[pc];
+      int line = delta.lines[pc];
+      pc++;
+      switch (op) {
+        case Opcode.CONST:
+          emitConstant(code[pc++]);
+          emitMember(CHECKCAST, classFile.classRef(VALUE));
+          depth++;
+          break;
+        case Opcode.LOAD:
+          emit(ALOAD_1);
+          emitInt(code[pc++]);
+          emitInt(code[pc++]);
+          emitMember(INVOKEVIRTUAL, classFile.methodRef(ENVIRONMENT, "lookup", "(II)" + VALUE_DESC));
+          depth++;
+          break;
+        case Opcode.UNDECLARED:
+          emitInt(line);
+          emitConstant(code[pc++]);
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/JitRuntime", "undeclared",
+              "(ILjava/lang/Object;)" + VALUE_DESC));
+          depth++;
+          break;
+        case Opcode.CLOSURE:
+          emitMember(NEW, classFile.classRef("CSE_Machine/Closure"));
+          emit(DUP);
+          emitConstant(code[pc++]);
+          emitMember(CHECKCAST, classFile.classRef("CSE_Machine/Delta"));
+          emit(ALOAD_1);
+          emitMember(INVOKESPECIAL, classFile.methodRef("CSE_Machine/Closure", "<init>",
+              "(LCSE_Machine/Delta;L" + ENVIRONMENT + ";)V"));
+          depth++;
+          break;
+        case Opcode.REC_CLOSURE:
+          emitConstant(code[pc++]);
+          emitMember(CHECKCAST, classFile.classRef("CSE_Machine/Delta"));
+          emit(ALOAD_1);
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/Closure", "recursive",
+              "(LCSE_Machine/Delta;L" + ENVIRONMENT + ";)LCSE_Machine/Closure;"));
+          depth++;
+          break;
+        case Opcode.TUPLE: {
+          int size = code[pc++];
+          if (size > MAX_TUPLE_LOCALS)
+            return null;
+          // The first element is on top of the stack
+          for (int i = 0; i < size; i++) {
+            emit(ASTORE);
+            emit(2 + i);
+          }
+          emitInt(size);
+          emitMember(ANEWARRAY, classFile.classRef(VALUE));
+          for (int i = 0; i < size; i++) {
+            emit(DUP);
+            emitInt(i);
+            emit(ALOAD);
+            emit(2 + i);
+            emit(AASTORE);
+          }
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/Tuple", "of",
+              "([" + VALUE_DESC + ")LCSE_Machine/Tuple;"));
+          maxLocals = Math.max(maxLocals, 2 + size);
+          depth += 1 - size;
+          break;
+        }
+        case Opcode.APPLY:
+          // rand, rator -> machine, rand, rator
+          emit(ALOAD_0);
+          emitMember(GETFIELD, classFile.fieldRef(CLASS_NAME, "machine", MACHINE_DESC));
+          emit(DUP_X2);
+          emit(POP);
+          emitInt(line);
+          emitMember(INVOKEVIRTUAL, classFile.methodRef(MACHINE, code[pc] == Opcode.RETURN ? "tailApply" : "apply",
+              "(" + VALUE_DESC + VALUE_DESC + "I)" + VALUE_DESC));
+          depth--;
+          break;
+        case Opcode.JUMP_IF_FALSE:
+          emitInt(line);
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/JitRuntime", "isTrue",
+              "(" + VALUE_DESC + "I)Z"));
+          depth--;
+          branches.add(new int[] { length, code[pc] });
+          depthAt[code[pc++]] = depth + 1;
+          emit(IFEQ);
+          emitShort(0);
+          break;
+        case Opcode.JUMP:
+          branches.add(new int[] { length, code[pc] });
+          depthAt[code[pc++]] = depth + 1;
+          emit(GOTO);
+          emitShort(0);
+          reachable = false;
+          break;
+        case Opcode.RETURN:
+          emit(ARETURN);
+          reachable = false;
+          break;
+        case Opcode.NOT:
+        case Opcode.NEG:
+          emitInt(line);
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/Operations", op == Opcode.NOT ? "not" : "neg",
+              "(" + VALUE_DESC + "I)" + VALUE_DESC));
+          break;
+        default:
+          if (op < Opcode.PLUS || op > Opcode.AUG)
+            throw new IllegalStateException("Unknown opcode " + op);
+          emitMember(GETSTATIC, classFile.fieldRef("PARSER/ASTNodeType", BINARY_TYPES[op - Opcode.PLUS],
+              "LPARSER/ASTNodeType;"));
+          emitInt(line);
+          emitMember(INVOKESTATIC, classFile.methodRef("CSE_Machine/JitRuntime", "binary",
+              "(" + VALUE_DESC + VALUE_DESC + "LPARSER/ASTNodeType;I)" + VALUE_DESC));
+          depth--;
+          break;
+      }
+      maxStack = Math.max(maxStack, depth);
+    }
+
+    if (length > MAX_BRANCH_OFFSET)
+      return null;
+    for (int[] branch : branches) {
+      int offset = jvmOffsets[branch[1]] - branch[0];
+      out[branch[0] + 1] = (byte) (offset >> 8);
+      out[branch[0] + 2] = (byte) offset;
+    }
+
+    // Room for the operands of the longest sequence emitted for one instruction
+    maxStack += 5;
+    if (maxStack > 0xFFFF)
+      return null;
+    return Arrays.copyOf(out, length);
+  }
+
+  // K[index]
+  private void emitConstant(int index) {
+    emitMember(GETSTATIC, classFile.fieldRef(CLASS_NAME, "K", CONSTANTS_DESC));
+    emitInt(index);
+    emit(AALOAD);
+  }
+
+  private void emitInt(int value) {
+    if (value >= -1 && value <= 5) {
+      emit(ICONST_0 + value);
+    } else if (value >= Byte.MIN_VALUE && value <= Byte.MAX_VALUE) {
+      emit(BIPUSH);
+      emit(value);
+    } else if (value >= Short.MIN_VALUE && value <= Short.MAX_VALUE) {
+      emit(SIPUSH);
+      emitShort(value);
+    } else {
+      emitMember(LDC_W, classFile.integer(value));
+    }
+  }
+
+  private void emitMember(int op, int constantIndex) {
+    emit(op);
+    emitShort(constantIndex);
+  }
+
+  private void emitShort(int value) {
+    emit(value >> 8);
+    emit(value);
+  }
+
+  private void begin() {
+    out = new byte[256];
+    length = 0;
+  }
+
+  private void emit(int value) {
+    if (length == out.length)
+      out = Arrays.copyOf(out, length * 2);
+    out[length++] = (byte) value;
+  }
+}
@@ -0,0 +1,7 @@
+package CSE_Machine;
+
+// JitFunction interface is implemented by the classes JitCompiler generates;
+// call evaluates the body of one delta in the given environment
+interface JitFunction {
+  Value call(Environment env);
+}
@@ -0,0 +1,27 @@
+package CSE_Machine;
+
+import PARSER.ASTNodeType;
+
+// JitRuntime class holds the helpers called from JIT-compiled code, taking their
+// operands in the order the code leaves them on the JVM stack
+final class JitRuntime {
+
+  private JitRuntime() {
+  }
+
+  static Value binary(Value rand_2, Value rand_1, ASTNodeType type, int line) {
+    return Operations.binary(type, rand_1, rand_2, line);
+  }
+
+  // RULE 8
+  static boolean isTrue(Value condition, int line) {
+    if (!(condition instanceof BoolValue))
+      SyntaxError.printError(line, "Expecting a truthvalue; found \"" + condition.getValue() + "\"");
+    return condition == BoolValue.TRUE;
+  }
+
+  static Value undeclared(int line, Object name) {
+    SyntaxError.printError(line, "identifier is not declared\"" + name + "\"");
+    return null;
+  }
+}
@@ -0,0 +1,67 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// Literal class is a control structure element holding a constant whose runtime
+// value is built once, when the delta is constructed
+public class Literal extends ASTNode {
+  private final Value literalValue;
+
+  public Literal(ASTNode node) {
+    setType(ASTNodeType.LITERAL);
+    setValue(node.getValue());
+    setSourceLineNumber(node.getSourceLineNumber());
+    literalValue = toValue(node);
+  }
+
+  // Constructor for a node whose value is already known, such as a built-in function
+  public Literal(ASTNode node, Value value) {
+    setType(ASTNodeType.LITERAL);
+    setValue(node.getValue());
+    setSourceLineNumber(node.getSourceLineNumber());
+    literalValue = value;
+  }
+
+  // Method to check whether a node of the given type is a constant
+  public static boolean isLiteral(ASTNodeType type) {
+    switch (type) {
+      case INTEGER:
+      case STRING:
+      case TRUE:
+      case FALSE:
+      case NIL:
+      case DUMMY:
+      case YSTAR:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  private static Value toValue(ASTNode node) {
+    switch (node.getType()) {
+      case INTEGER:
+        return IntValue.parse(node.getValue());
+      case STRING:
+        return new StringValue(node.getValue());
+      case TRUE:
+        return BoolValue.TRUE;
+      case FALSE:
+        return BoolValue.FALSE;
+      case NIL:
+        return Tuple.NIL;
+      case DUMMY:
+        return DummyValue.DUMMY;
+      case YSTAR:
+        return BuiltIn.YSTAR;
+      default:
+        throw new IllegalArgumentException("Not a literal: " + node.getType());
+    }
+  }
+
+  // Getter method for the runtime value of the constant
+  public Value getLiteralValue() {
+    return literalValue;
+  }
+}
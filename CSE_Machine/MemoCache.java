@@ -0,0 +1,127 @@
+package CSE_Machine;
+
+import java.util.ArrayDeque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// MemoCache class holds the results of rec functions applied to integers,
+// strings, truthvalues and tuples of those (the -memo mode). It keeps the most
+// recently used entries, up to a fixed number, and counts hits, misses and
+// evictions.
+//
+// RPAL has no state, so an application that printed nothing gives the same
+// value every time it is evaluated; only such applications are stored, and
+// a function that prints is still run on every call.
+public final class MemoCache {
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+
+  private final LinkedHashMap<Call, Value> entries;
+  private long hits;
+  private long misses;
+  private long evictions;
+
+  public MemoCache(int capacity) {
+    entries = new LinkedHashMap<Call, Value>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<Call, Value> eldest) {
+        if (size() <= capacity)
+          return false;
+        evictions++;
+        return true;
+      }
+    };
+  }
+
+  // Method to get the key of applying function to argument, or null if the
+  // application is not memoized
+  Call call(Closure function, Value argument) {
+    if (!function.isRecursive() || !argument.isMemoKey())
+      return null;
+    return new Call(function, argument, Operations.outputCount());
+  }
+
+  // Method to get the stored result of an application, or null if there is none
+  Value lookup(Call call) {
+    Value result = entries.get(call);
+    if (result != null)
+      hits++;
+    else
+      misses++;
+    return result;
+  }
+
+  // Method to store the result of an application, unless it printed something
+  void store(Call call, Value result) {
+    if (Operations.outputCount() == call.outputCount)
+      entries.put(call, result);
+  }
+
+  // Method to get the counters, as printed at exit
+  public String getStatistics() {
+    return "memo hits " + hits + " misses " + misses + " evictions " + evictions;
+  }
+
+  // Method to compare two memo keys by structure, on an explicit stack since
+  // tuples nest as deep as the lists built from them
+  private static boolean sameValue(Value first, Value second) {
+    ArrayDeque<Value> pending = new ArrayDeque<Value>();
+    pending.push(first);
+    pending.push(second);
+    while (!pending.isEmpty()) {
+      Value b = pending.pop();
+      Value a = pending.pop();
+      if (a == b)
+        continue;
+      if (a.memoHash() != b.memoHash())
+        return false;
+      if (a instanceof IntValue && b instanceof IntValue) {
+        if (((IntValue) a).compareTo((IntValue) b) != 0)
+          return false;
+      } else if (a instanceof StringValue && b instanceof StringValue) {
+        if (!((StringValue) a).contentEquals((StringValue) b))
+          return false;
+      } else if (a instanceof Tuple && b instanceof Tuple) {
+        Tuple x = (Tuple) a;
+        Tuple y = (Tuple) b;
+        if (x.size() != y.size())
+          return false;
+        for (int i = 1; i <= x.size(); i++) {
+          pending.push(x.get(i));
+          pending.push(y.get(i));
+        }
+      } else {
+        return false; // truthvalues are shared, so a == b covers them
+      }
+    }
+    return true;
+  }
+
+  // Call class is the key of one application: the closure, compared by
+  // identity, and its argument, compared by structure
+  static final class Call {
+    private final Closure function;
+    private final Value argument;
+    private final int hash;
+    private final long outputCount; // output printed before the call started
+
+    private Call(Closure function, Value argument, long outputCount) {
+      this.function = function;
+      this.argument = argument;
+      this.hash = System.identityHashCode(function) * 31 + argument.memoHash();
+      this.outputCount = outputCount;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      if (!(other instanceof Call))
+        return false;
+      Call call = (Call) other;
+      return call.function == function && call.hash == hash && sameValue(call.argument, argument);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// MemoMarker class is pushed on the control stack below the body of a memoized
+// application; when it is popped, the result of the application is on top of
+// the value stack and is stored in the memo cache
+public class MemoMarker extends ASTNode {
+  private final MemoCache.Call call;
+
+  MemoMarker(MemoCache.Call call) {
+    setType(ASTNodeType.MEMO);
+    this.call = call;
+  }
+
+  // Getter method for the application the result belongs to
+  MemoCache.Call getCall() {
+    return call;
+  }
+}
@@ -0,0 +1,35 @@
+package CSE_Machine;
+
+// Opcode class lists the instructions of the bytecode machine. Operands follow
+// the opcode in the same int[] stream.
+final class Opcode {
+  static final int CONST = 0;         // k: push constant k
+  static final int LOAD = 1;          // depth slot: push the variable at that lexical address (RULE 1)
+  static final int UNDECLARED = 2;    // k: report the identifier named by constant k as undeclared
+  static final int CLOSURE = 3;       // k: push a closure over the delta in constant k (RULE 2)
+  static final int REC_CLOSURE = 4;   // k: push a recursive closure over the delta in constant k
+  static final int TUPLE = 5;         // n: pop n values into a tuple (RULE 9)
+  static final int APPLY = 6;         // pop rator and rand and apply (RULES 3, 4, 10-13)
+  static final int JUMP_IF_FALSE = 7; // target: pop a truthvalue, jump if false (RULE 8)
+  static final int JUMP = 8;          // target
+  static final int RETURN = 9;        // end of a delta body (RULE 5)
+  static final int NOT = 10;
+  static final int NEG = 11;
+  static final int PLUS = 12;
+  static final int MINUS = 13;
+  static final int MULT = 14;
+  static final int DIV = 15;
+  static final int EXP = 16;
+  static final int LS = 17;
+  static final int LE = 18;
+  static final int GR = 19;
+  static final int GE = 20;
+  static final int EQ = 21;
+  static final int NE = 22;
+  static final int OR = 23;
+  static final int AND = 24;
+  static final int AUG = 25;
+
+  private Opcode() {
+  }
+}
@@ -0,0 +1,326 @@
+package CSE_Machine;
+
+import PARSER.ASTNodeType;
+
+// Operations class holds the meaning of the RPAL operators and built-in functions
+// on runtime values. It is shared by the CSE machine and the bytecode machine so
+// both evaluate programs identically; errors are reported against the source
+// line of the operator being applied.
+final class Operations {
+  private static long outputCount; // number of values printed so far
+
+  private Operations() {
+  }
+
+  // Method to perform binary operations
+  static Value binary(ASTNodeType type, Value rand_1, Value rand_2, int line) {
+    switch (type) {   // Handle different binary operations
+      case PLUS:
+      case MINUS:
+      case MULT:
+      case DIV:
+      case EXP:
+      case LS:
+      case LE:
+      case GR:
+      case GE:
+        return bin_ari_operations(type, rand_1, rand_2, line);
+      case EQ:
+      case NE:
+        return EQ_NE_operators(type, rand_1, rand_2, line);
+      case OR:
+      case AND:
+        return AND_OR_operations(type, rand_1, rand_2, line);
+      case AUG:
+        return extend_Tuples(rand_1, rand_2, line);
+      default:
+        throw new IllegalArgumentException("Not a binary operator: " + type);
+    }
+  }
+
+  // Method to perform binary arithmetic operations
+  static Value bin_ari_operations(ASTNodeType type, Value rand_1, Value rand_2, int line) {
+    if (!(rand_1 instanceof IntValue) || !(rand_2 instanceof IntValue))
+      SyntaxError.printError(line,
+          "Expected two integers; was given \"" + rand_1.getValue() + "\", \"" + rand_2.getValue() + "\"");
+
+    IntValue int_1 = (IntValue) rand_1;
+    IntValue int_2 = (IntValue) rand_2;
+
+    try {
+      switch (type) {
+        case PLUS:
+          return int_1.add(int_2);
+        case MINUS:
+          return int_1.subtract(int_2);
+        case MULT:
+          return int_1.multiply(int_2);
+        case DIV:
+          return int_1.divide(int_2);
+        case EXP:
+          return int_1.pow(int_2);
+        case LS:
+          return BoolValue.valueOf(int_1.compareTo(int_2) < 0);
+        case LE:
+          return BoolValue.valueOf(int_1.compareTo(int_2) <= 0);
+        case GR:
+          return BoolValue.valueOf(int_1.compareTo(int_2) > 0);
+        case GE:
+          return BoolValue.valueOf(int_1.compareTo(int_2) >= 0);
+        default:
+          throw new IllegalArgumentException("Not an arithmetic operator: " + type);
+      }
+    } catch (ArithmeticException e) {
+      SyntaxError.printError(line,
+          "Cannot evaluate " + rand_1.getValue() + " " + type.getPrintName() + " " + rand_2.getValue()
+              + ": " + e.getMessage());
+      return null;
+    }
+  }
+
+  // Method to perform equality and inequality operations
+  static Value EQ_NE_operators(ASTNodeType type, Value rand_1, Value rand_2, int line) {
+    boolean equal = false;
+
+    if (rand_1 instanceof BoolValue) {
+      if (!(rand_2 instanceof BoolValue))
+        SyntaxError.printError(line,
+            "Cannot compare dissimilar types; was given \"" + rand_1.getValue() + "\", \"" + rand_2.getValue() + "\"");
+      equal = rand_1 == rand_2;
+    } else {
+      if (rand_1.getClass() != rand_2.getClass())
+        SyntaxError.printError(line,
+            "Cannot compare dissimilar types; was given \"" + rand_1.getValue() + "\", \"" + rand_2.getValue() + "\"");
+
+      if (rand_1 instanceof StringValue)
+        equal = ((StringValue) rand_1).contentEquals((StringValue) rand_2);
+      else if (rand_1 instanceof IntValue)
+        equal = ((IntValue) rand_1).compareTo((IntValue) rand_2) == 0;
+      else
+        SyntaxError.printError(line,
+            "Don't know how to " + type + " \"" + rand_1.getValue() + "\", \"" + rand_2.getValue() + "\"");
+    }
+
+    return BoolValue.valueOf(type == ASTNodeType.EQ ? equal : !equal);
+  }
+
+  // Method to perform logical AND and OR operations
+  static Value AND_OR_operations(ASTNodeType type, Value rand_1, Value rand_2, int line) {
+    if (!(rand_1 instanceof BoolValue) || !(rand_2 instanceof BoolValue))
+      SyntaxError.printError(line,
+          "Cannot " + type + " \"" + rand_1.getValue() + "\", \"" + rand_2.getValue() + "\"");
+
+    boolean bool_1 = ((BoolValue) rand_1).booleanValue();
+    boolean bool_2 = ((BoolValue) rand_2).booleanValue();
+    if (type == ASTNodeType.OR)
+      return BoolValue.valueOf(bool_1 || bool_2);
+    else
+      return BoolValue.valueOf(bool_1 && bool_2);
+  }
+
+  // Method to extend tuples
+  // The left operand is left untouched; aug yields a new tuple.
+  static Value extend_Tuples(Value rand1, Value rand2, int line) {
+    if (!(rand1 instanceof Tuple))
+      SyntaxError.printError(line,
+          "Cannot append to a non-tuple \"" + rand1.getValue() + "\"");
+
+    return ((Tuple) rand1).append(rand2);
+  }
+
+  // Method to apply unary operations
+  static Value unary(ASTNodeType type, Value rand, int line) {
+    switch (type) {
+      case NOT:
+        return not(rand, line);
+      case NEG:
+        return neg(rand, line);
+      default:
+        throw new IllegalArgumentException("Not a unary operator: " + type);
+    }
+  }
+
+  static Value not(Value rand, int line) {
+    if (!(rand instanceof BoolValue))
+      SyntaxError.printError(line,
+          "Expecting a Boolean Value; was given \"" + rand.getValue() + "\"");
+
+    return BoolValue.valueOf(!((BoolValue) rand).booleanValue());
+  }
+
+  static Value neg(Value rand, int line) {
+    if (!(rand instanceof IntValue))
+      SyntaxError.printError(line,
+          "Expecting a Boolean Value; was given \"" + rand.getValue() + "\"");
+
+    return ((IntValue) rand).negate();
+  }
+
+  // Method to create the environment for applying a closure to rand (RULES 4 and 11)
+  static Environment bindArguments(Closure closure, Value rand, int line) {
+    Delta nextDelta = closure.getDelta();
+
+    // Create a new environment with the parent set to the environment of the closure
+    int numBoundVars = nextDelta.getBoundVarCount();
+    Environment newEnv = new Environment(closure.getEnv(), numBoundVars);
+
+    // Check if the number of bound variables in nextDelta is 1
+    if (numBoundVars == 1) {
+      newEnv.bind(0, rand);
+    }
+    // RULE 11
+    else {
+      if (!(rand instanceof Tuple) || ((Tuple) rand).size() < numBoundVars)
+        SyntaxError.printError(line,
+            "Expected a tuple of " + numBoundVars + " elements; was given \"" + rand.getValue() + "\"");
+
+      for (int i = 0; i < numBoundVars; i++) {
+        newEnv.bind(i, ((Tuple) rand).get(i + 1)); // + 1 coz tuple indexing starts at 1
+      }
+    }
+    return newEnv;
+  }
+
+  // Method to apply Y* to a closure (RULE 12)
+  static Value applyYStar(Value rand, int line) {
+    if (!(rand instanceof Closure))
+      SyntaxError.printError(line,
+          "Expected a Delta; was given \"" + rand.getValue() + "\"");
+
+    return new Eta((Closure) rand);
+  }
+
+  // RULE 10 (// Method to perform tuple selection)
+  static Value Tuple_Selection(Tuple rator, Value rand, int line) {
+    if (!(rand instanceof IntValue))
+      SyntaxError.printError(line,
+          "tuple index must be Integer, Not with \"" + rand.getValue() + "\"");
+
+    IntValue index = (IntValue) rand;
+    if (!index.isSmall() || index.longValue() < 1 || index.longValue() > rator.size()) // tuple indexing starts at 1
+      SyntaxError.printError(line,
+          "Tuple  index " + rand.getValue() + " out of bounds");
+
+    return rator.get((int) index.longValue());
+  }
+
+  // Method to apply a rator that is not a closure or an eta closure (RULES 3, 10 and 12)
+  static Value applyValue(Value rator, Value rand, int line) {
+    if (rator == BuiltIn.YSTAR)
+      return applyYStar(rand, line);
+    if (rator instanceof Tuple)
+      return Tuple_Selection((Tuple) rator, rand, line);
+
+    Value result = null;
+    if (rator instanceof BuiltIn)
+      result = evaluate_BuilIn_Functions((BuiltIn) rator, rand, line);
+    if (result == null)
+      SyntaxError.printError(line, "Cannot evaluate \"" + rator.getValue() + "\"");
+    return result;
+  }
+
+  // Method to evaluate a built-in function; returns null for names that are not handled here
+  static Value evaluate_BuilIn_Functions(BuiltIn rator, Value rand, int line) {
+    switch (rator.getFunction()) {
+      // Check if rator is a built-in function and perform the corresponding operation
+      case ISINTEGER:
+        return BoolValue.valueOf(rand instanceof IntValue);
+      case ISSTRING:
+        return BoolValue.valueOf(rand instanceof StringValue);
+      case ISDUMMY:
+        return BoolValue.valueOf(rand instanceof DummyValue);
+      case ISFUNCTION:
+        return BoolValue.valueOf(rand instanceof Closure);
+      case ISTUPLE:
+        return BoolValue.valueOf(rand instanceof Tuple);
+      case ISTRUTHVALUE:
+        return BoolValue.valueOf(rand instanceof BoolValue);
+      case STEM:
+        return stem(rand, line);
+      case STERN:
+        return stern(rand, line);
+      case PRINT:
+        get_Node_Value(rand);
+        return DummyValue.DUMMY;
+      case ITOS:
+        return int_To_str(rand, line);
+      case ORDER:
+        return order(rand, line);
+      case NULL:
+        return is_Empty_Tuple(rand, line);
+      case CONC:
+        // Conc takes two arguments, one application at a time
+        if (rator.getArgument() == null)
+          return rator.bind(rand);
+        return conc(rator.getArgument(), rand, line);
+      default:
+        return null;
+    }
+  }
+
+  // Method to extract the first character of a string
+  static Value stem(Value rand, int line) {
+    if (!(rand instanceof StringValue))
+      SyntaxError.printError(line,
+          "Expected a string; was given \"" + rand.getValue() + "\"");
+
+    return ((StringValue) rand).first();
+  }
+
+  // Method to extract all but the first character of a string
+  static Value stern(Value rand, int line) {
+    if (!(rand instanceof StringValue))
+      SyntaxError.printError(line,
+          "Expected a string; was given \"" + rand.getValue() + "\"");
+
+    return ((StringValue) rand).rest();
+  }
+
+  // Method to concatenate two strings
+  static Value conc(Value rand1, Value rand2, int line) {
+    if (!(rand1 instanceof StringValue) || !(rand2 instanceof StringValue))
+      SyntaxError.printError(line,
+          "Expected two strings; was given \"" + rand1.getValue() + "\", \"" + rand2.getValue() + "\"");
+
+    return StringValue.concat((StringValue) rand1, (StringValue) rand2);
+  }
+
+// Method to convert an integer to a string
+  static Value int_To_str(Value rand, int line) {
+    if (!(rand instanceof IntValue))
+      SyntaxError.printError(line,
+          "Expected an integer; was given \"" + rand.getValue() + "\"");
+
+    return new StringValue(rand.getValue());
+  }
+
+  // Method to calculate the order of a tuple
+  static Value order(Value rand, int line) {
+    if (!(rand instanceof Tuple))
+      SyntaxError.printError(line, "Expected a tuple; was given \"" + rand.getValue() + "\"");
+
+    return IntValue.valueOf(((Tuple) rand).size());
+  }
+
+// Method to check if a tuple is empty
+  static Value is_Empty_Tuple(Value rand, int line) {
+    if (!(rand instanceof Tuple))
+      SyntaxError.printError(line, "Expected a tuple; was given \"" + rand.getValue() + "\"");
+
+    return BoolValue.valueOf(((Tuple) rand).size() == 0);
+  }
+
+  // Method to get the number of values printed so far
+  static long outputCount() {
+    return outputCount;
+  }
+
+  // Method to get the value of a node
+  static void get_Node_Value(Value rand) {
+    outputCount++;
+    String evaluationResult = rand.getValue();
+    evaluationResult = evaluationResult.replace("\\t", "\t");
+    evaluationResult = evaluationResult.replace("\\n", "\n");
+    System.out.print(evaluationResult);
+  }
+}
@@ -0,0 +1,448 @@
+package CSE_Machine;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Stack;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+import SCANNER.SymbolTable;
+
+// ProgramCache class keeps the deltas of a compiled program on disk, so that a
+// program run again unchanged skips scanning, parsing, standardizing,
+// optimizing and flattening. The cache of "dir/prog.rpal" compiled at -On is
+// "dir/.rpalcache/prog.rpal.On.rpalc". It starts with the interpreter version
+// and a SHA-256 hash of the source, and is only loaded while both still match.
+//
+// A cache file holds the deltas in index order: their bound variables, then
+// their control structures, element by element. Names and other values are
+// written once and referred to by number after that. They go back into the
+// SymbolTable when the file is loaded, since ids differ from run to run.
+public final class ProgramCache {
+  // Change this whenever the front end, the optimizer or the format below
+  // changes what a program compiles to, so that old cache files are ignored
+  public static final String VERSION = "rpal-5";
+
+  private static final int MAGIC = 0x5250434c; // "RPCL"
+  private static final ASTNodeType[] TYPES = ASTNodeType.values();
+
+  private final Path cacheFile;
+  private final byte[] sourceHash;
+
+  // Constructor hashes the given source, whose program is compiled at the given optimization level
+  public ProgramCache(Path source, int optimizationLevel) throws IOException {
+    Path directory = source.toAbsolutePath().getParent().resolve(".rpalcache");
+    cacheFile = directory.resolve(source.getFileName() + ".O" + optimizationLevel + ".rpalc");
+    try {
+      sourceHash = MessageDigest.getInstance("SHA-256").digest(Files.readAllBytes(source));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e); // every Java platform provides SHA-256
+    }
+  }
+
+  // Getter method for the file the program is cached in
+  public Path getCacheFile() {
+    return cacheFile;
+  }
+
+  // Method to get the root delta of the cached program, or null if there is no
+  // cache file for this version of the source, or it cannot be read
+  public Delta load() {
+    if (!Files.isRegularFile(cacheFile))
+      return null;
+    try {
+      // The file is read whole and decoded from the array, which is several
+      // times faster than reading it a byte at a time from a stream
+      Reader in = new Reader(Files.readAllBytes(cacheFile));
+      if (in.readInt() != MAGIC || !in.readVersion().equals(VERSION))
+        return null;
+      if (!Arrays.equals(in.readBytes(sourceHash.length), sourceHash))
+        return null;
+      return in.readProgram();
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      return null; // a damaged cache file is compiled again, as if it were missing
+    }
+  }
+
+  // Method to write the program with the given root delta to the cache file.
+  // The cache is only an aid, so a file that cannot be written is skipped and
+  // the program runs uncached.
+  public void store(Delta rootDelta) {
+    Path temporary = null;
+    try {
+      Files.createDirectories(cacheFile.getParent());
+      temporary = Files.createTempFile(cacheFile.getParent(), cacheFile.getFileName().toString(), ".tmp");
+      try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary), 1 << 16))) {
+        out.writeInt(MAGIC);
+        out.writeUTF(VERSION);
+        out.write(sourceHash);
+        new Writer(out).writeProgram(rootDelta);
+      }
+      // Readers see either the old file or the whole new one, never a part
+      try {
+        Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    } catch (IOException | RuntimeException | StackOverflowError e) {
+      // the program is run as compiled, without a cache file
+    } finally {
+      try {
+        if (temporary != null)
+          Files.deleteIfExists(temporary); // already gone once it has been moved
+      } catch (IOException ignored) {
+      }
+    }
+  }
+
+  // Writer class writes the deltas reachable from a root delta
+  private static class Writer {
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+
+    Writer(DataOutputStream out) {
+      this.out = out;
+    }
+
+    void writeProgram(Delta rootDelta) throws IOException {
+      List<Delta> deltas = collectDeltas(rootDelta);
+      writeNumber(deltas.size());
+      writeNumber(rootDelta.getIndex());
+      for (Delta delta : deltas) {
+        writeNumber(delta.getBoundVarCount());
+        for (int i = 0; i < delta.getBoundVarCount(); i++)
+          writeString(delta.getBoundVarName(i));
+        writeCtrlStruct(delta.getCtrlStruct());
+      }
+    }
+
+    // Find every delta of the program, in index order; the indices are the
+    // positions of the deltas in the file
+    private List<Delta> collectDeltas(Delta rootDelta) {
+      List<Delta> deltas = new ArrayList<Delta>();
+      ArrayDeque<List<ASTNode>> pending = new ArrayDeque<List<ASTNode>>();
+      add(deltas, rootDelta, pending);
+      while (!pending.isEmpty()) {
+        for (ASTNode node : pending.pop()) {
+          if (node instanceof Delta)
+            add(deltas, (Delta) node, pending);
+          else if (node instanceof RecDelta)
+            add(deltas, ((RecDelta) node).getDelta(), pending);
+          else if (node instanceof Beta) {
+            pending.push(((Beta) node).getTHEN());
+            pending.push(((Beta) node).getELSE());
+          }
+        }
+      }
+      for (int i = 0; i < deltas.size(); i++)
+        if (deltas.get(i) == null)
+          throw new IllegalStateException("Delta " + i + " is not reachable from the root delta");
+      return deltas;
+    }
+
+    private void add(List<Delta> deltas, Delta delta, ArrayDeque<List<ASTNode>> pending) {
+      while (deltas.size() <= delta.getIndex())
+        deltas.add(null);
+      if (deltas.get(delta.getIndex()) == null) {
+        deltas.set(delta.getIndex(), delta);
+        pending.push(delta.getCtrlStruct());
+      }
+    }
+
+    // Write a control structure and the arms of its conditionals. The lists
+    // still being written are kept on an explicit stack, each with the
+    // position of its next element, or -1 before its size is written, so that
+    // no depth of nested conditionals can overflow the Java stack.
+    private void writeCtrlStruct(List<ASTNode> ctrlStruct) throws IOException {
+      ArrayDeque<List<ASTNode>> lists = new ArrayDeque<List<ASTNode>>();
+      int[] positions = new int[16];
+      lists.push(ctrlStruct);
+      positions[0] = -1;
+      while (!lists.isEmpty()) {
+        List<ASTNode> list = lists.peek();
+        int top = lists.size() - 1;
+        if (positions[top] < 0) {
+          writeNumber(list.size());
+          positions[top] = 0;
+        }
+        if (positions[top] == list.size()) {
+          lists.pop();
+          continue;
+        }
+        ASTNode node = list.get(positions[top]++);
+        writeElement(node);
+        if (node instanceof Beta) {
+          // The then arm goes on top, so it is written before the else arm
+          if (top + 3 > positions.length)
+            positions = Arrays.copyOf(positions, positions.length * 2);
+          lists.push(((Beta) node).getELSE());
+          positions[top + 1] = -1;
+          lists.push(((Beta) node).getTHEN());
+          positions[top + 2] = -1;
+        }
+      }
+    }
+
+    // Write one element; the arms of a beta are written by writeCtrlStruct
+    private void writeElement(ASTNode node) throws IOException {
+      out.writeByte(node.getType().ordinal());
+      writeNumber(node.getSourceLineNumber());
+      switch (node.getType()) {
+        case LITERAL:
+          out.writeByte(literalType(((Literal) node).getLiteralValue()).ordinal());
+          writeString(node.getValue());
+          break;
+        case ADDRESS:
+          writeString(node.getValue());
+          writeNumber(((Address) node).getDepth());
+          writeNumber(((Address) node).getSlot());
+          break;
+        case DELTA:
+          writeNumber(((Delta) node).getIndex());
+          break;
+        case RECDELTA:
+          writeNumber(((RecDelta) node).getDelta().getIndex());
+          break;
+        case TAU:
+          writeNumber(((Tau) node).getSize());
+          break;
+        case BETA:
+          break;
+        default:
+          writeString(node.getValue());
+          break;
+      }
+    }
+
+    // Get the type of node a literal was made from; a built-in function is
+    // written as the identifier it was resolved from
+    private static ASTNodeType literalType(Value value) {
+      if (value instanceof IntValue)
+        return ASTNodeType.INTEGER;
+      if (value instanceof StringValue)
+        return ASTNodeType.STRING;
+      if (value instanceof BoolValue)
+        return ((BoolValue) value).booleanValue() ? ASTNodeType.TRUE : ASTNodeType.FALSE;
+      if (value == Tuple.NIL)
+        return ASTNodeType.NIL;
+      if (value instanceof DummyValue)
+        return ASTNodeType.DUMMY;
+      if (value == BuiltIn.YSTAR)
+        return ASTNodeType.YSTAR;
+      if (value instanceof BuiltIn)
+        return ASTNodeType.IDENTIFIER;
+      throw new IllegalStateException("Literal of unexpected value " + value.getValue());
+    }
+
+    // A string is written as its number plus one, followed by its text the
+    // first time it is written; 0 stands for no string
+    private void writeString(String string) throws IOException {
+      if (string == null) {
+        writeNumber(0);
+        return;
+      }
+      Integer number = strings.get(string);
+      if (number != null) {
+        writeNumber(number + 1);
+        return;
+      }
+      writeNumber(strings.size() + 1);
+      strings.put(string, strings.size());
+      byte[] text = string.getBytes(StandardCharsets.UTF_8);
+      writeNumber(text.length);
+      out.write(text);
+    }
+
+    // Numbers are written seven bits to a byte, low bits first, with the top
+    // bit set on every byte but the last, so most take one or two bytes
+    private void writeNumber(int number) throws IOException {
+      if (number < 0)
+        throw new IllegalStateException("Negative number " + number);
+      while (number >= 0x80) {
+        out.writeByte(number & 0x7f | 0x80);
+        number >>>= 7;
+      }
+      out.writeByte(number);
+    }
+  }
+
+  // Reader class reads back the deltas written by Writer. A byte read past the
+  // end of a truncated file throws an ArrayIndexOutOfBoundsException, which
+  // load treats like any other damage.
+  private static class Reader {
+    private final byte[] data;
+    private int position;
+    private final List<String> strings = new ArrayList<String>();
+    private Delta[] deltas;
+
+    Reader(byte[] data) {
+      this.data = data;
+    }
+
+    // Read an int as written by DataOutputStream.writeInt
+    int readInt() {
+      int number = 0;
+      for (int i = 0; i < 4; i++)
+        number = number << 8 | readByte();
+      return number;
+    }
+
+    // Read the version as written by DataOutputStream.writeUTF, which for a
+    // version of plain ASCII is its length in two bytes and then its text
+    String readVersion() throws IOException {
+      int length = readByte() << 8 | readByte();
+      return new String(readBytes(length), StandardCharsets.UTF_8);
+    }
+
+    byte[] readBytes(int length) throws IOException {
+      if (length > data.length - position)
+        throw new IOException("Cache file ends early");
+      byte[] bytes = Arrays.copyOfRange(data, position, position + length);
+      position += length;
+      return bytes;
+    }
+
+    private int readByte() {
+      return data[position++] & 0xff;
+    }
+
+    Delta readProgram() throws IOException {
+      deltas = new Delta[readNumber()];
+      int rootIndex = readNumber();
+      for (int i = 0; i < deltas.length; i++) {
+        deltas[i] = new Delta();
+        deltas[i].setIndex(i);
+      }
+      for (Delta delta : deltas) {
+        int boundVarCount = readNumber();
+        for (int i = 0; i < boundVarCount; i++) {
+          String name = readString();
+          delta.appendBddVar(name == null ? -1 : SymbolTable.intern(name));
+        }
+        Stack<ASTNode> body = new Stack<ASTNode>();
+        readCtrlStruct(body);
+        delta.setCtrlStruct(body);
+      }
+      return deltas[rootIndex];
+    }
+
+    // Read a control structure and the arms of its conditionals, keeping the
+    // lists still being read on an explicit stack, each with the number of
+    // elements it still needs, or -1 before its size is read
+    private void readCtrlStruct(Stack<ASTNode> ctrlStruct) throws IOException {
+      ArrayDeque<Stack<ASTNode>> lists = new ArrayDeque<Stack<ASTNode>>();
+      int[] remaining = new int[16];
+      lists.push(ctrlStruct);
+      remaining[0] = -1;
+      while (!lists.isEmpty()) {
+        Stack<ASTNode> list = lists.peek();
+        int top = lists.size() - 1;
+        if (remaining[top] < 0) {
+          remaining[top] = readNumber();
+          list.ensureCapacity(remaining[top]);
+        }
+        if (remaining[top] == 0) {
+          lists.pop();
+          continue;
+        }
+        remaining[top]--;
+        ASTNode node = readElement();
+        list.add(node);
+        if (node instanceof Beta) {
+          // The then arm was written first, so it goes on top
+          if (top + 3 > remaining.length)
+            remaining = Arrays.copyOf(remaining, remaining.length * 2);
+          lists.push(((Beta) node).getELSE());
+          remaining[top + 1] = -1;
+          lists.push(((Beta) node).getTHEN());
+          remaining[top + 2] = -1;
+        }
+      }
+    }
+
+    // Read one element; the arms of a beta are read by readCtrlStruct
+    private ASTNode readElement() throws IOException {
+      ASTNodeType type = TYPES[readByte()];
+      int line = readNumber();
+      switch (type) {
+        case LITERAL: {
+          ASTNode node = node(TYPES[readByte()], readString(), line);
+          if (node.getType() != ASTNodeType.IDENTIFIER)
+            return new Literal(node);
+          BuiltIn builtIn = BuiltIn.lookup(node.getValue());
+          if (builtIn == null)
+            throw new IOException("Unknown built-in function " + node.getValue());
+          return new Literal(node, builtIn);
+        }
+        case ADDRESS: {
+          ASTNode node = node(ASTNodeType.IDENTIFIER, readString(), line);
+          int depth = readNumber();
+          return new Address(node, depth, readNumber());
+        }
+        case DELTA:
+          return deltas[readNumber()];
+        case RECDELTA:
+          return new RecDelta(node(ASTNodeType.GAMMA, null, line), deltas[readNumber()]);
+        case TAU:
+          return new Tau(readNumber(), line);
+        case BETA: {
+          Beta beta = new Beta();
+          beta.setSourceLineNumber(line);
+          return beta;
+        }
+        default:
+          return node(type, readString(), line);
+      }
+    }
+
+    private static ASTNode node(ASTNodeType type, String value, int line) {
+      ASTNode node = new ASTNode();
+      node.setType(type);
+      node.setValue(value);
+      node.setSourceLineNumber(line);
+      return node;
+    }
+
+    private String readString() throws IOException {
+      int number = readNumber() - 1;
+      if (number < 0)
+        return null;
+      if (number < strings.size())
+        return strings.get(number);
+      if (number != strings.size())
+        throw new IOException("String " + number + " out of order");
+      int length = readNumber();
+      if (length > data.length - position)
+        throw new IOException("Cache file ends early");
+      String string = new String(data, position, length, StandardCharsets.UTF_8);
+      position += length;
+      strings.add(string);
+      return string;
+    }
+
+    private int readNumber() throws IOException {
+      int number = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        int b = readByte();
+        number |= (b & 0x7f) << shift;
+        if (b < 0x80)
+          return number;
+      }
+      throw new IOException("Number too long");
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// RecDelta class replaces Y* applied to a lambda whose body is again a lambda,
+// which is what a rec binding of a function standardizes to. It evaluates to a
+// closure over the inner lambda whose environment binds the function's own
+// name to that same closure, so recursive calls need no eta closure.
+public class RecDelta extends ASTNode {
+  private final Delta delta;
+
+  public RecDelta(ASTNode gamma, Delta delta) {
+    setType(ASTNodeType.RECDELTA);
+    setSourceLineNumber(gamma.getSourceLineNumber());
+    this.delta = delta;
+  }
+
+  // Getter method for the delta of the inner lambda
+  public Delta getDelta() {
+    return delta;
+  }
+}
@@ -0,0 +1,152 @@
+package CSE_Machine;
+
+import java.util.ArrayDeque;
+
+// StringValue class represents an RPAL string value
+// A string is either a slice (offset, length) of a flat java.lang.String or the
+// concatenation of two other strings (a rope node). Stern and Stem only take a
+// new slice and Conc only links its operands, so walking or accumulating a
+// string is linear overall. A rope is flattened into a single String the first
+// time its characters are needed (Print, eq, Stem/Stern), and the flat copy is
+// kept so this happens at most once.
+//
+// The hash of a string as a memo key is the one String.hashCode computes, the
+// sum of c[i] * 31^(n-1-i) modulo 2^32. With 31^n kept alongside it, Conc and
+// Stern get the hash of their result from those of their operands, so -memo
+// never flattens a rope to hash it.
+public final class StringValue extends Value {
+  // 31 * INVERSE_31 == 1 modulo 2^32, so multiplying by it divides by 31
+  private static final int INVERSE_31 = 0xbdef7bdf;
+
+  private String flat;
+  private int offset;
+  private final int length;
+  private StringValue left; // non-null until a rope node has been flattened
+  private StringValue right;
+  private final int hash;
+  private final int power; // 31^length
+
+  public StringValue(String value) {
+    this(value, 0, value.length(), value.hashCode(), powerOf31(value.length()));
+  }
+
+  private StringValue(String flat, int offset, int length, int hash, int power) {
+    this.flat = flat;
+    this.offset = offset;
+    this.length = length;
+    this.hash = hash;
+    this.power = power;
+  }
+
+  private StringValue(StringValue left, StringValue right) {
+    this.left = left;
+    this.right = right;
+    this.length = left.length + right.length;
+    this.hash = left.hash * right.power + right.hash;
+    this.power = left.power * right.power;
+  }
+
+  // Method to concatenate two strings without copying their characters
+  public static StringValue concat(StringValue left, StringValue right) {
+    if (left.length == 0)
+      return right;
+    if (right.length == 0)
+      return left;
+    return new StringValue(left, right);
+  }
+
+  // Method to get the number of characters in the string
+  public int length() {
+    return length;
+  }
+
+  // Method to get the first character of the string (Stem)
+  public StringValue first() {
+    if (length == 0)
+      return this;
+    flatten();
+    char first = flat.charAt(offset);
+    return new StringValue(flat, offset, 1, first, 31);
+  }
+
+  // Method to get all but the first character of the string (Stern)
+  public StringValue rest() {
+    if (length == 0)
+      return this;
+    flatten();
+    int restPower = power * INVERSE_31;
+    return new StringValue(flat, offset + 1, length - 1, hash - flat.charAt(offset) * restPower, restPower);
+  }
+
+  // Method to compare the characters of two strings
+  public boolean contentEquals(StringValue other) {
+    if (length != other.length)
+      return false;
+    if (this == other || length == 0)
+      return true;
+    flatten();
+    other.flatten();
+    return flat.regionMatches(offset, other.flat, other.offset, length);
+  }
+
+  @Override
+  boolean isMemoKey() {
+    return true;
+  }
+
+  @Override
+  int memoHash() {
+    return hash;
+  }
+
+  private static int powerOf31(int exponent) {
+    int result = 1;
+    int square = 31;
+    for (; exponent > 0; exponent >>= 1) {
+      if ((exponent & 1) != 0)
+        result *= square;
+      square *= square;
+    }
+    return result;
+  }
+
+  @Override
+  public String getValue() {
+    flatten();
+    return flat.substring(offset, offset + length);
+  }
+
+  @Override
+  void appendValue(StringBuilder printValue) {
+    flatten();
+    printValue.append(flat, offset, offset + length);
+  }
+
+  // Copy the leaves of a rope into one String, left to right. Ropes built by
+  // accumulating loops are as deep as they are long, so this walks them with an
+  // explicit stack.
+  private void flatten() {
+    if (left == null)
+      return;
+
+    char[] chars = new char[length];
+    int position = 0;
+    ArrayDeque<StringValue> pending = new ArrayDeque<StringValue>();
+    pending.push(this);
+    while (!pending.isEmpty()) {
+      StringValue node = pending.pop();
+      if (node.left != null) {
+        pending.push(node.right);
+        pending.push(node.left);
+      } else {
+        node.flat.getChars(node.offset, node.offset + node.length, chars, position);
+        position += node.length;
+      }
+    }
+
+    flat = new String(chars);
+    offset = 0;
+    left = null;
+    right = null;
+  }
+}
@@ -0,0 +1,22 @@
+package CSE_Machine;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// Tau class is the control structure element that builds a tuple out of the
+// values on top of the stack; it keeps their number rather than the tree of
+// the tuple expression
+public class Tau extends ASTNode {
+  private final int size;
+
+  public Tau(int size, int sourceLineNumber) {
+    setType(ASTNodeType.TAU);
+    setSourceLineNumber(sourceLineNumber);
+    this.size = size;
+  }
+
+  // Getter method for the number of elements of the tuple
+  public int getSize() {
+    return size;
+  }
+}
@@ -1,34 +1,169 @@
 package CSE_Machine;
 
-import PARSER.ASTNode;
-import PARSER.ASTNodeType;
+import java.util.Arrays;
 
-// Tuple class represents a tuple node in the abstract syntax tree (AST)
-public class Tuple extends ASTNode {
+// Tuple class represents an RPAL tuple value
+// Tuples are persistent vectors: a 32-way trie of leaves plus a separate tail
+// holding the last (up to 32) elements. aug copies only the tail, or the path
+// from the root to the new leaf once the tail is full, so appending is
+// amortized O(1), selection is O(log32 n) and every earlier tuple stays valid
+// and shares its structure with the result. Whether a tuple can be a memo key,
+// and its hash as one, are worked out as it is built, from those of the tuple
+// it extends, so -memo never has to walk it.
+public final class Tuple extends Value {
+    private static final int BITS = 5;
+    private static final int WIDTH = 1 << BITS;
+    private static final int MASK = WIDTH - 1;
+    private static final Object[] EMPTY_NODE = new Object[WIDTH];
 
-    // Constructor to initialize the type of the tuple node
-    public Tuple() {
-        setType(ASTNodeType.TUPLE);
+    // The empty tuple; tuples are never modified once built, so it is shared
+    public static final Tuple NIL = new Tuple(0, BITS, EMPTY_NODE, new Value[0], 1, true);
+
+    private final int count;
+    private final int shift; // depth of the trie times BITS
+    private final Object[] root;
+    private final Value[] tail;
+    private final int hash; // memoHash, combining those of the elements in order
+    private final boolean key; // every element is a memo key
+
+    private Tuple(int count, int shift, Object[] root, Value[] tail, int hash, boolean key) {
+        this.count = count;
+        this.shift = shift;
+        this.root = root;
+        this.tail = tail;
+        this.hash = hash;
+        this.key = key;
+    }
+
+    // Method to build a tuple holding the given elements, in order
+    public static Tuple of(Value[] elements) {
+        int hash = NIL.hash;
+        boolean key = true;
+        for (Value element : elements) {
+            hash = extendHash(hash, element);
+            key &= element.isMemoKey();
+        }
+        if (elements.length <= WIDTH)
+            return new Tuple(elements.length, BITS, EMPTY_NODE, elements, hash, key);
+
+        // The tuples built on the way are never seen, so they all carry the
+        // hash of the whole
+        Tuple tuple = new Tuple(WIDTH, BITS, EMPTY_NODE, Arrays.copyOfRange(elements, 0, WIDTH), hash, key);
+        for (int from = WIDTH; from < elements.length; from += WIDTH)
+            tuple = tuple.pushTail(Arrays.copyOfRange(elements, from, Math.min(from + WIDTH, elements.length)),
+                    hash, key);
+        return tuple;
+    }
+
+    private static int extendHash(int hash, Value element) {
+        return hash * 31 + element.memoHash();
     }
 
     // Method to get the string representation of the tuple's value
     @Override
     public String getValue() {
-        ASTNode childNode = getChild();
-        if (childNode == null)
-            return "nil";
-
-        String printValue = "(";
-        while (childNode.getSibling() != null) {
-            printValue += childNode.getValue() + ", ";
-            childNode = childNode.getSibling();
+        StringBuilder printValue = new StringBuilder();
+        appendValue(printValue);
+        return printValue.toString();
+    }
+
+    // Nested tuples are written into the same builder instead of being
+    // converted to intermediate strings
+    @Override
+    void appendValue(StringBuilder printValue) {
+        if (count == 0) {
+            printValue.append("nil");
+            return;
+        }
+
+        printValue.append('(');
+        for (int i = 1; i <= count; i++) {
+            if (i > 1)
+                printValue.append(", ");
+            get(i).appendValue(printValue);
+        }
+        printValue.append(')');
+    }
+
+    // Method to get the element at the given position; tuple indexing starts at 1
+    public Value get(int index) {
+        int i = index - 1;
+        if (i >= tailOffset())
+            return tail[i - tailOffset()];
+
+        Object[] node = root;
+        for (int level = shift; level > 0; level -= BITS)
+            node = (Object[]) node[(i >>> level) & MASK];
+        return (Value) node[i & MASK];
+    }
+
+    // Method to get the number of elements in the tuple
+    public int size() {
+        return count;
+    }
+
+    // Method to get a new tuple holding the elements of this one followed by the given value
+    public Tuple append(Value element) {
+        int newHash = extendHash(hash, element);
+        boolean newKey = key && element.isMemoKey();
+        if (tail.length < WIDTH) {
+            Value[] newTail = Arrays.copyOf(tail, tail.length + 1);
+            newTail[tail.length] = element;
+            return new Tuple(count + 1, shift, root, newTail, newHash, newKey);
+        }
+        return pushTail(new Value[] { element }, newHash, newKey);
+    }
+
+    @Override
+    boolean isMemoKey() {
+        return key;
+    }
+
+    @Override
+    int memoHash() {
+        return hash;
+    }
+
+    // Index of the first element held in the tail
+    private int tailOffset() {
+        return count < WIDTH ? 0 : ((count - 1) >>> BITS) << BITS;
+    }
+
+    // Move the (full) tail into the trie and start a new tail with the given
+    // elements; the new tuple has the given hash and key flag
+    private Tuple pushTail(Value[] newTail, int newHash, boolean newKey) {
+        Object[] leaf = Arrays.copyOf(tail, WIDTH, Object[].class);
+        Object[] newRoot;
+        int newShift = shift;
+        if ((count >>> BITS) > (1 << shift)) { // the trie is full, so it grows a level
+            newRoot = new Object[WIDTH];
+            newRoot[0] = root;
+            newRoot[1] = newPath(shift, leaf);
+            newShift += BITS;
+        } else
+            newRoot = pushLeaf(shift, root, leaf);
+        return new Tuple(count + newTail.length, newShift, newRoot, newTail, newHash, newKey);
+    }
+
+    // Copy the path from the given node down to where the leaf belongs
+    private Object[] pushLeaf(int level, Object[] parent, Object[] leaf) {
+        int subIndex = ((count - 1) >>> level) & MASK;
+        Object[] node = parent.clone();
+        if (level == BITS)
+            node[subIndex] = leaf;
+        else {
+            Object[] child = (Object[]) parent[subIndex];
+            node[subIndex] = child != null ? pushLeaf(level - BITS, child, leaf) : newPath(level - BITS, leaf);
         }
-        printValue += childNode.getValue() + ")";
-        return printValue;
+        return node;
     }
 
-    // Method to accept a NodeCopier visitor and return a copy of the tuple
-    public Tuple accept(NodeCopier nodeCopier) {
-        return nodeCopier.getTupleCopy(this);
+    // Build a chain of single-child nodes from the given level down to the leaf
+    private static Object[] newPath(int level, Object[] leaf) {
+        if (level == 0)
+            return leaf;
+        Object[] node = new Object[WIDTH];
+        node[0] = newPath(level - BITS, leaf);
+        return node;
     }
 }
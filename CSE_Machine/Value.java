@@ -0,0 +1,27 @@
+package CSE_Machine;
+
+// Value class is the base of every runtime value handled by the CSE machine.
+// Values are immutable once built, so they are shared freely between the value
+// stack, tuples and environments.
+public abstract class Value {
+
+  // Method to get the printable representation of the value
+  public abstract String getValue();
+
+  // Method to write the printable representation of the value into a builder
+  void appendValue(StringBuilder printValue) {
+    printValue.append(getValue());
+  }
+
+  // Method to check whether the value can be the argument of a memoized call:
+  // an integer, string, truthvalue or tuple of those
+  boolean isMemoKey() {
+    return false;
+  }
+
+  // Method to get the hash of a memo key, which equal keys share; values that
+  // are not keys all hash to 0
+  int memoHash() {
+    return 0;
+  }
+}
@@ -0,0 +1,29 @@
+package OPTIMIZER;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import PARSER.ASTNode;
+
+// BoundNames class tracks the names bound by the lambdas enclosing the node a
+// pass is visiting, so the pass can tell a variable from a built-in function
+final class BoundNames {
+  private final Map<String, Integer> counts = new HashMap<String, Integer>();
+
+  // Method to bring the names bound by a lambda into scope
+  void enter(ASTNode lambda) {
+    for (String name : Trees.boundNames(lambda))
+      counts.merge(name, 1, Integer::sum);
+  }
+
+  // Method to take the names bound by a lambda out of scope again
+  void exit(ASTNode lambda) {
+    for (String name : Trees.boundNames(lambda))
+      if (counts.merge(name, -1, Integer::sum) == 0)
+        counts.remove(name);
+  }
+
+  boolean contains(String name) {
+    return counts.containsKey(name);
+  }
+}
@@ -0,0 +1,443 @@
+package OPTIMIZER;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeSet;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// CommonSubexpressionEliminator pass finds pure subexpressions that occur more
+// than once in the body of a lambda (or in the program) and binds them once:
+// T becomes gamma (lambda v. T[v/S]) S, where T is the smallest subtree that
+// holds every occurrence of S. Subtrees are grouped by a structural hash.
+// Nested lambdas are left out of a body, since they are evaluated separately,
+// so every variable of S means the same throughout.
+//
+// Pure means evaluating it prints nothing: operators, tuples, the
+// side-effect-free built-ins (Order, Null, Stem, ...), Conc, and selecting from
+// a name that is let-bound to a tuple. A user function may print, so its
+// applications are never shared. A pure expression may still fail, so S is
+// only bound at T when the binding evaluates it when the program would have:
+// the first occurrence evaluated in T (operands and tuple elements go last to
+// first, the rand before the rator) must not be in a conditional arm, and
+// everything evaluated in T before it must be sure not to fail.
+public class CommonSubexpressionEliminator implements Pass {
+  // Smallest expression without an application worth binding
+  private static final int MIN_OPERATOR_SIZE = 7;
+
+  private final BoundNames scope = new BoundNames();
+  private final Set<String> tupleNames = new HashSet<String>();
+  private int shared;
+  private int freshNames;
+
+  // Occurrences of the subexpressions of the body being processed, the group
+  // each occurrence is in, the groups that may still be shared, largest
+  // first, and the parent of each node of the body
+  private Map<Subtree, Occurrences> occurrences;
+  private Map<ASTNode, Occurrences> groupOf;
+  private TreeSet<Occurrences> candidates;
+  private Map<ASTNode, ASTNode> parents;
+  // Nodes that a binding has put under a lambda or above one; they are no
+  // longer occurrences, and are dropped from their groups when next seen
+  private Set<ASTNode> retired;
+  private int groupCount;
+
+  @Override
+  public String getName() {
+    return "common-subexpr";
+  }
+
+  // The number reported is the number of occurrences replaced by a name, not
+  // the number of evaluations saved, which depends on how the program runs
+  @Override
+  public String getChangeLabel() {
+    return "shared occurrences";
+  }
+
+  @Override
+  public int run(ASTNode root) {
+    shared = 0;
+    processBody(root);
+    return shared;
+  }
+
+  // Steps of the walks besides visiting a node and leaving a lambda
+  private static final int BODY = 2; // share in a body, then visit it
+  private static final int LET_BODY = 3; // the value of a let is visited
+  private static final int COMBINE = 4; // the children of a node are collected
+  private static final int CONDITIONAL_DONE = 5; // likewise, for a conditional
+
+  // Method to share the common subexpressions of one body, then of the lambdas in it
+  private void processBody(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, BODY);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      switch (work.step()) {
+        case BODY:
+          share(node);
+          work.push(node, WorkStack.VISIT);
+          break;
+        case LET_BODY: {
+          // let x = V in E: remember whether x names a tuple while in E
+          ASTNode lambda = node.getChild();
+          enter(lambda, lambda.getSibling());
+          work.push(lambda, WorkStack.EXIT);
+          work.push(Trees.lambdaBody(lambda), BODY);
+          break;
+        }
+        case WorkStack.EXIT:
+          exit(node);
+          break;
+        default:
+          if (node.getType() == ASTNodeType.LAMBDA) {
+            enter(node, null);
+            work.push(node, WorkStack.EXIT);
+            work.push(Trees.lambdaBody(node), BODY);
+          } else if (node.getType() == ASTNodeType.GAMMA && node.getChild().getType() == ASTNodeType.LAMBDA) {
+            work.push(node, LET_BODY);
+            work.push(node.getChild().getSibling(), WorkStack.VISIT);
+          } else {
+            work.pushChildren(node, WorkStack.VISIT);
+          }
+          break;
+      }
+    }
+  }
+
+  // Method to bind the repeated pure subexpressions of a body that can be
+  // bound without changing what the body does, largest first. The body is
+  // collected once; each binding retires the nodes it changes and collects
+  // the value it binds, and only the groups that changed are tried again.
+  private void share(ASTNode body) {
+    occurrences = new HashMap<Subtree, Occurrences>();
+    groupOf = new IdentityHashMap<ASTNode, Occurrences>();
+    candidates = new TreeSet<Occurrences>(
+        (a, b) -> a.key.size != b.key.size ? Integer.compare(b.key.size, a.key.size) : Integer.compare(a.order, b.order));
+    parents = new IdentityHashMap<ASTNode, ASTNode>();
+    retired = Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
+    collect(body);
+
+    while (!candidates.isEmpty()) {
+      List<ASTNode> uses = new ArrayList<ASTNode>(candidates.pollFirst().current());
+      if (uses.size() < 2)
+        continue;
+      Set<ASTNode> onPath = Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
+      ASTNode site = bindingSite(uses, onPath);
+      if (!isEvaluatedFirst(site, onPath, uses))
+        continue;
+
+      String name = "cse$" + (++freshNames);
+      ASTNode value = Trees.copy(uses.get(0));
+      retire(site);
+      for (ASTNode occurrence : uses)
+        Trees.makeLeaf(occurrence, ASTNodeType.IDENTIFIER, name);
+      shared += uses.size();
+      Trees.bind(site, name, value);
+      parents.put(value, site);
+      collect(value);
+    }
+  }
+
+  // Method to retire the nodes a binding at site changes: the site and what
+  // is under it, which goes into a lambda, and the nodes above it, which come
+  // to hold that lambda. Nested lambdas hold no occurrences, so they are not
+  // searched. The groups that lose an occurrence may be shared again.
+  private void retire(ASTNode site) {
+    Set<Occurrences> changed = Collections.newSetFromMap(new IdentityHashMap<Occurrences, Boolean>());
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(site);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      retire(node, changed);
+      for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+        if (child.getType() != ASTNodeType.LAMBDA)
+          pending.push(child);
+    }
+    // Everything above a retired node is retired already
+    for (ASTNode node = parents.get(site); node != null && !retired.contains(node); node = parents.get(node))
+      retire(node, changed);
+
+    // A group is keyed by one of its nodes, which must stay as it is, as the
+    // key is compared by structure; the retired nodes are about to change
+    for (Occurrences group : changed) {
+      List<ASTNode> uses = group.current();
+      occurrences.remove(group.key);
+      if (uses.isEmpty()) {
+        candidates.remove(group);
+        continue;
+      }
+      group.key = new Subtree(uses.get(0), group.key.hash, group.key.size, group.key.hasApplication);
+      occurrences.put(group.key, group);
+      if (uses.size() > 1)
+        candidates.add(group);
+    }
+  }
+
+  private void retire(ASTNode node, Set<Occurrences> changed) {
+    retired.add(node);
+    Occurrences group = groupOf.remove(node);
+    if (group != null)
+      changed.add(group);
+  }
+
+  // Method to get the smallest subtree holding all the given nodes, collecting
+  // the nodes on the paths from it down to them
+  private ASTNode bindingSite(List<ASTNode> nodes, Set<ASTNode> onPath) {
+    Map<ASTNode, Integer> firstPath = new IdentityHashMap<ASTNode, Integer>();
+    List<ASTNode> path = new ArrayList<ASTNode>();
+    for (ASTNode node = nodes.get(0); node != null; node = parents.get(node)) {
+      firstPath.put(node, path.size());
+      path.add(node);
+    }
+    int highest = 0;
+    for (ASTNode node : nodes) {
+      while (!firstPath.containsKey(node)) {
+        onPath.add(node);
+        node = parents.get(node);
+      }
+      highest = Math.max(highest, firstPath.get(node));
+    }
+    for (int i = 0; i <= highest; i++)
+      onPath.add(path.get(i));
+    return path.get(highest);
+  }
+
+  // Method to check whether evaluating site reaches one of the occurrences,
+  // outside any conditional arm, before anything that could fail; onPath holds
+  // the nodes with an occurrence under them
+  private boolean isEvaluatedFirst(ASTNode site, Set<ASTNode> onPath, List<ASTNode> uses) {
+    Set<ASTNode> targets = Collections.newSetFromMap(new IdentityHashMap<ASTNode, Boolean>());
+    targets.addAll(uses);
+    ASTNode node = site;
+    while (!targets.contains(node)) {
+      if (node.getType() == ASTNodeType.CONDITIONAL) {
+        // Only the condition is evaluated before the arms, and only one arm after it
+        node = node.getChild();
+        if (!onPath.contains(node))
+          return false;
+        continue;
+      }
+      List<ASTNode> children = new ArrayList<ASTNode>();
+      for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+        children.add(child);
+      ASTNode next = null;
+      for (int i = children.size() - 1; i >= 0 && next == null; i--) {
+        if (onPath.contains(children.get(i)))
+          next = children.get(i);
+        else if (!Trees.cannotFail(children.get(i), scope))
+          return false;
+      }
+      if (next == null)
+        return false;
+      node = next;
+    }
+    return true;
+  }
+
+  // Method to record the pure subexpressions of a body, outside nested
+  // lambdas, and the parents of its nodes
+  private void collect(ASTNode root) {
+    // The key of each node collected, or null if it is not pure, held until
+    // its parent is collected
+    List<Subtree> keys = new ArrayList<Subtree>();
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.VISIT) {
+        if (node.getType() == ASTNodeType.LAMBDA) {
+          keys.add(null);
+          continue;
+        }
+        for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+          parents.put(child, node);
+        work.push(node, node.getType() == ASTNodeType.CONDITIONAL ? CONDITIONAL_DONE : COMBINE);
+        work.pushChildren(node, WorkStack.VISIT);
+        continue;
+      }
+
+      // The keys of the children are the last ones, first to last
+      int first = keys.size();
+      for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+        first--;
+      List<Subtree> childKeys = keys.subList(first, keys.size());
+      Subtree key = work.step() == COMBINE ? key(node, childKeys) : null;
+      childKeys.clear();
+      keys.add(key);
+    }
+  }
+
+  // Method to get the key of a node from the keys of its children, so every
+  // node is hashed once, and record the node as an occurrence; null if it is
+  // not pure
+  private Subtree key(ASTNode node, List<Subtree> childKeys) {
+    boolean pure = true;
+    int hash = node.getType().hashCode() * 31 + (node.getValue() == null ? 0 : node.getValue().hashCode());
+    int size = 1;
+    boolean application = node.getType() == ASTNodeType.GAMMA;
+    for (Subtree childKey : childKeys) {
+      if (childKey == null) {
+        pure = false;
+        continue;
+      }
+      hash = hash * 31 + childKey.hash;
+      size += childKey.size;
+      application |= childKey.hasApplication;
+    }
+    if (!pure || !isPureNode(node))
+      return null;
+
+    Subtree subtree = new Subtree(node, hash, size, application);
+    if (node.getChild() != null && (application || size >= MIN_OPERATOR_SIZE)) {
+      Occurrences group = occurrences.computeIfAbsent(subtree, key -> new Occurrences(key, groupCount++));
+      group.nodes.add(node);
+      groupOf.put(node, group);
+      if (group.nodes.size() > 1)
+        candidates.add(group); // again, if it gained an occurrence since it was last tried
+    }
+    return subtree;
+  }
+
+  // Method to check whether a node is pure, given that its children are
+  private boolean isPureNode(ASTNode node) {
+    switch (node.getType()) {
+      case IDENTIFIER:
+      case TAU:
+      case PLUS:
+      case MINUS:
+      case MULT:
+      case DIV:
+      case EXP:
+      case LS:
+      case LE:
+      case GR:
+      case GE:
+      case EQ:
+      case NE:
+      case OR:
+      case AND:
+      case AUG:
+      case NOT:
+      case NEG:
+        return true;
+      case GAMMA: {
+        ASTNode rator = node.getChild();
+        if (rator.getType() == ASTNodeType.GAMMA) // Conc applied to both arguments
+          return isBuiltIn(rator.getChild(), "Conc") || isBuiltIn(rator.getChild(), "conc");
+        if (rator.getType() != ASTNodeType.IDENTIFIER)
+          return false;
+        return tupleNames.contains(rator.getValue())
+            || (Trees.isPureBuiltIn(rator.getValue()) && !scope.contains(rator.getValue()));
+      }
+      default:
+        return Trees.isConstant(node);
+    }
+  }
+
+  private boolean isBuiltIn(ASTNode node, String name) {
+    return node.getType() == ASTNodeType.IDENTIFIER && name.equals(node.getValue()) && !scope.contains(name);
+  }
+
+  // Method to bring a lambda's names into scope; value is what a let binds its
+  // single name to, or null
+  private void enter(ASTNode lambda, ASTNode value) {
+    scope.enter(lambda);
+    for (String name : Trees.boundNames(lambda))
+      tupleNames.remove(name);
+    if (value != null && lambda.getChild().getType() == ASTNodeType.IDENTIFIER && isTupleValued(value))
+      tupleNames.add(lambda.getChild().getValue());
+  }
+
+  // An outer binding of a name shadowed by the lambda is not remembered, so it
+  // is no longer taken to be a tuple once the lambda has been left
+  private void exit(ASTNode lambda) {
+    scope.exit(lambda);
+    for (String name : Trees.boundNames(lambda))
+      tupleNames.remove(name);
+  }
+
+  private static boolean isTupleValued(ASTNode value) {
+    return value.getType() == ASTNodeType.TAU || value.getType() == ASTNodeType.NIL
+        || value.getType() == ASTNodeType.AUG;
+  }
+
+  // Occurrences class is a group of structurally equal subexpressions of a
+  // body, keyed by one of them that is still in the body. order is the
+  // position of the group among those collected, which breaks ties in size.
+  private final class Occurrences {
+    Subtree key;
+    final int order;
+    final List<ASTNode> nodes = new ArrayList<ASTNode>();
+
+    Occurrences(Subtree key, int order) {
+      this.key = key;
+      this.order = order;
+    }
+
+    // Get the occurrences that have not been retired, dropping the others
+    List<ASTNode> current() {
+      nodes.removeIf(retired::contains);
+      return nodes;
+    }
+  }
+
+  // Subtree class keys a tree by its structure, so that equal subexpressions
+  // fall into the same bucket of the occurrence table
+  private static final class Subtree {
+    final ASTNode node;
+    final int hash;
+    final int size;
+    final boolean hasApplication;
+
+    Subtree(ASTNode node, int hash, int size, boolean hasApplication) {
+      this.node = node;
+      this.hash = hash;
+      this.size = size;
+      this.hasApplication = hasApplication;
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+      return other instanceof Subtree && ((Subtree) other).hash == hash && sameTree(node, ((Subtree) other).node);
+    }
+
+    private static boolean sameTree(ASTNode a, ASTNode b) {
+      // Pairs of nodes still to be compared
+      ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+      pending.push(a);
+      pending.push(b);
+      while (!pending.isEmpty()) {
+        ASTNode nodeB = pending.pop();
+        ASTNode nodeA = pending.pop();
+        if (nodeA.getType() != nodeB.getType() || !Objects.equals(nodeA.getValue(), nodeB.getValue()))
+          return false;
+        ASTNode childA = nodeA.getChild();
+        ASTNode childB = nodeB.getChild();
+        while (childA != null && childB != null) {
+          pending.push(childA);
+          pending.push(childB);
+          childA = childA.getSibling();
+          childB = childB.getSibling();
+        }
+        if (childA != null || childB != null)
+          return false;
+      }
+      return true;
+    }
+  }
+}
@@ -0,0 +1,275 @@
+package OPTIMIZER;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import CSE_Machine.IntValue;
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// ConstantFolder pass evaluates arithmetic, comparison, boolean and Conc
+// applications whose operands are literals, and substitutes a literal bound
+// by "let x = literal in E" (standardized to gamma (lambda x. E) literal) into
+// the uses of x in E. An operation that would fail at run time is left alone,
+// so the error is still reported when, and only if, it is evaluated.
+public class ConstantFolder implements Pass {
+  // Folding a ** b only when b is at most this keeps huge powers for run time
+  private static final long MAX_FOLDED_EXPONENT = 256;
+
+  private final BoundNames scope = new BoundNames();
+  // Literals propagated to the names of the enclosing lets, innermost last; a
+  // lambda that binds one of the names again hides it with a null
+  private final Map<String, List<ASTNode>> literals = new HashMap<String, List<ASTNode>>();
+  private int changes;
+
+  @Override
+  public String getName() {
+    return "constant-folding";
+  }
+
+  @Override
+  public int run(ASTNode root) {
+    changes = 0;
+    fold(root);
+    return changes;
+  }
+
+  // Steps of the walk besides visiting a node and leaving a lambda
+  private static final int FOLD = 2; // the children are folded, fold the node
+  private static final int PROPAGATE = 3; // the value of a let is folded
+  private static final int UNWRAP = 4; // the body of a propagated let is folded
+
+  private void fold(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      switch (work.step()) {
+        case WorkStack.VISIT:
+          visit(node, work);
+          break;
+        case WorkStack.EXIT:
+          scope.exit(node);
+          for (String name : Trees.boundNames(node))
+            unbind(name);
+          break;
+        case PROPAGATE:
+          propagate(node, work);
+          break;
+        case UNWRAP:
+          unbind(node.getChild().getChild().getValue());
+          Trees.replace(node, Trees.lambdaBody(node.getChild()));
+          changes++;
+          break;
+        default:
+          foldNode(node);
+          break;
+      }
+    }
+  }
+
+  // Method to schedule the folding of a node: the body of a lambda in its
+  // scope, the value of a let before the let, or else the children first. A
+  // variable is replaced by the literal propagated to it, if any.
+  private void visit(ASTNode node, WorkStack work) {
+    if (node.getType() == ASTNodeType.IDENTIFIER) {
+      List<ASTNode> bound = literals.get(node.getValue());
+      ASTNode literal = bound == null ? null : bound.get(bound.size() - 1);
+      if (literal != null)
+        Trees.makeLeaf(node, literal.getType(), literal.getValue());
+      return;
+    }
+    if (node.getType() == ASTNodeType.LAMBDA) {
+      scope.enter(node);
+      for (String name : Trees.boundNames(node))
+        bind(name, null);
+      work.push(node, WorkStack.EXIT);
+      work.push(Trees.lambdaBody(node), WorkStack.VISIT);
+      return;
+    }
+    if (node.getType() == ASTNodeType.GAMMA && node.getChild().getType() == ASTNodeType.LAMBDA
+        && node.getChild().getChild().getType() == ASTNodeType.IDENTIFIER) {
+      work.push(node, PROPAGATE);
+      work.push(node.getChild().getSibling(), WorkStack.VISIT);
+      return;
+    }
+    work.push(node, FOLD);
+    work.pushChildren(node, WorkStack.VISIT);
+  }
+
+  private void foldNode(ASTNode node) {
+    switch (node.getType()) {
+      case PLUS:
+      case MINUS:
+      case MULT:
+      case DIV:
+      case EXP:
+      case LS:
+      case LE:
+      case GR:
+      case GE:
+        foldArithmetic(node);
+        break;
+      case EQ:
+      case NE:
+        foldEquality(node);
+        break;
+      case OR:
+      case AND:
+        foldLogical(node);
+        break;
+      case NOT:
+        if (isBoolean(node.getChild())) {
+          Trees.makeLeaf(node, node.getChild().getType() == ASTNodeType.TRUE ? ASTNodeType.FALSE : ASTNodeType.TRUE,
+              null);
+          changes++;
+        }
+        break;
+      case NEG:
+        if (node.getChild().getType() == ASTNodeType.INTEGER) {
+          Trees.makeLeaf(node, ASTNodeType.INTEGER, IntValue.parse(node.getChild().getValue()).negate().getValue());
+          changes++;
+        }
+        break;
+      case GAMMA:
+        foldConc(node);
+        break;
+      default:
+        break;
+    }
+  }
+
+  // gamma (lambda x. E) literal => E with x replaced by the literal; the
+  // literal has been folded by now
+  private void propagate(ASTNode gamma, WorkStack work) {
+    ASTNode lambda = gamma.getChild();
+    ASTNode rand = lambda.getSibling();
+    if (!Trees.isConstant(rand)) {
+      work.push(lambda, WorkStack.VISIT);
+      return;
+    }
+
+    // x is no longer bound once the literal takes its place, so the body is
+    // folded, with x replaced as it is reached, in the scope of the gamma
+    ASTNode body = Trees.lambdaBody(lambda);
+    bind(lambda.getChild().getValue(), rand);
+    work.push(gamma, UNWRAP);
+    work.push(body, WorkStack.VISIT);
+  }
+
+  private void bind(String name, ASTNode literal) {
+    literals.computeIfAbsent(name, key -> new ArrayList<ASTNode>()).add(literal);
+  }
+
+  private void unbind(String name) {
+    List<ASTNode> bound = literals.get(name);
+    bound.remove(bound.size() - 1);
+    if (bound.isEmpty())
+      literals.remove(name);
+  }
+
+  private void foldArithmetic(ASTNode node) {
+    ASTNode left = node.getChild();
+    ASTNode right = left.getSibling();
+    if (left.getType() != ASTNodeType.INTEGER || right.getType() != ASTNodeType.INTEGER)
+      return;
+
+    IntValue a = IntValue.parse(left.getValue());
+    IntValue b = IntValue.parse(right.getValue());
+    IntValue result = null;
+    try {
+      switch (node.getType()) {
+        case PLUS:
+          result = a.add(b);
+          break;
+        case MINUS:
+          result = a.subtract(b);
+          break;
+        case MULT:
+          result = a.multiply(b);
+          break;
+        case DIV:
+          result = a.divide(b);
+          break;
+        case EXP:
+          if (!b.isSmall() || b.longValue() > MAX_FOLDED_EXPONENT)
+            return;
+          result = a.pow(b);
+          break;
+        default:
+          foldToBoolean(node, compare(node.getType(), a.compareTo(b)));
+          return;
+      }
+    } catch (ArithmeticException e) {
+      return; // reported at run time
+    }
+    Trees.makeLeaf(node, ASTNodeType.INTEGER, result.getValue());
+    changes++;
+  }
+
+  private static boolean compare(ASTNodeType type, int comparison) {
+    switch (type) {
+      case LS:
+        return comparison < 0;
+      case LE:
+        return comparison <= 0;
+      case GR:
+        return comparison > 0;
+      default:
+        return comparison >= 0;
+    }
+  }
+
+  private void foldEquality(ASTNode node) {
+    ASTNode left = node.getChild();
+    ASTNode right = left.getSibling();
+    boolean equal;
+    if (left.getType() == ASTNodeType.INTEGER && right.getType() == ASTNodeType.INTEGER)
+      equal = IntValue.parse(left.getValue()).compareTo(IntValue.parse(right.getValue())) == 0;
+    else if (left.getType() == ASTNodeType.STRING && right.getType() == ASTNodeType.STRING)
+      equal = left.getValue().equals(right.getValue());
+    else if (isBoolean(left) && isBoolean(right))
+      equal = left.getType() == right.getType();
+    else
+      return;
+    foldToBoolean(node, node.getType() == ASTNodeType.EQ ? equal : !equal);
+  }
+
+  private void foldLogical(ASTNode node) {
+    ASTNode left = node.getChild();
+    ASTNode right = left.getSibling();
+    if (!isBoolean(left) || !isBoolean(right))
+      return;
+    boolean a = left.getType() == ASTNodeType.TRUE;
+    boolean b = right.getType() == ASTNodeType.TRUE;
+    foldToBoolean(node, node.getType() == ASTNodeType.OR ? a || b : a && b);
+  }
+
+  // gamma (gamma Conc 'a') 'b' => 'ab', unless Conc has been rebound
+  private void foldConc(ASTNode node) {
+    ASTNode rator = node.getChild();
+    ASTNode second = rator.getSibling();
+    if (rator.getType() != ASTNodeType.GAMMA || second.getType() != ASTNodeType.STRING)
+      return;
+    ASTNode function = rator.getChild();
+    ASTNode first = function.getSibling();
+    if (function.getType() != ASTNodeType.IDENTIFIER || first.getType() != ASTNodeType.STRING
+        || !(function.getValue().equals("Conc") || function.getValue().equals("conc"))
+        || scope.contains(function.getValue()))
+      return;
+
+    Trees.makeLeaf(node, ASTNodeType.STRING, first.getValue() + second.getValue());
+    changes++;
+  }
+
+  private void foldToBoolean(ASTNode node, boolean value) {
+    Trees.makeLeaf(node, value ? ASTNodeType.TRUE : ASTNodeType.FALSE, null);
+    changes++;
+  }
+
+  private static boolean isBoolean(ASTNode node) {
+    return node.getType() == ASTNodeType.TRUE || node.getType() == ASTNodeType.FALSE;
+  }
+}
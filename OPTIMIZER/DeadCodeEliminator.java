@@ -0,0 +1,132 @@
+package OPTIMIZER;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// DeadCodeEliminator pass removes the bindings of let, where and "and"
+// definitions whose names are never used, and the arms of conditionals whose
+// test is a constant. A binding is only removed if evaluating its value could
+// neither fail nor print: a literal, a bound variable or built-in, a lambda, a
+// rec function (Y* applied to a lambda) or a tuple of those. The tree is
+// processed bottom up, so a helper used only by removed helpers goes too.
+public class DeadCodeEliminator implements Pass {
+  private final BoundNames scope = new BoundNames();
+  private int changes;
+
+  @Override
+  public String getName() {
+    return "dead-code";
+  }
+
+  @Override
+  public int run(ASTNode root) {
+    changes = 0;
+    eliminate(root);
+    return changes;
+  }
+
+  // Step of the walk once the children of a node have been processed
+  private static final int FINISH = 2;
+
+  private void eliminate(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.EXIT) {
+        scope.exit(node);
+      } else if (work.step() == FINISH) {
+        if (node.getType() == ASTNodeType.CONDITIONAL)
+          pruneConditional(node);
+        else if (node.getType() == ASTNodeType.GAMMA && node.getChild().getType() == ASTNodeType.LAMBDA)
+          removeUnusedBindings(node);
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        scope.enter(node);
+        work.push(node, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(node), WorkStack.VISIT);
+      } else {
+        work.push(node, FINISH);
+        work.pushChildren(node, WorkStack.VISIT);
+      }
+    }
+  }
+
+  // true -> A | B => A, and false -> A | B => B
+  private void pruneConditional(ASTNode node) {
+    ASTNode condition = node.getChild();
+    if (condition.getType() != ASTNodeType.TRUE && condition.getType() != ASTNodeType.FALSE)
+      return;
+    ASTNode thenArm = condition.getSibling();
+    Trees.replace(node, condition.getType() == ASTNodeType.TRUE ? thenArm : thenArm.getSibling());
+    changes++;
+  }
+
+  // gamma (lambda x. E) V => E, when x is not used in E; for simultaneous
+  // definitions, gamma (lambda (x, y). E) (tau V W) drops each unused name
+  // together with its value
+  private void removeUnusedBindings(ASTNode gamma) {
+    ASTNode lambda = gamma.getChild();
+    ASTNode variables = lambda.getChild();
+    ASTNode rand = lambda.getSibling();
+    ASTNode body = Trees.lambdaBody(lambda);
+
+    if (variables.getType() == ASTNodeType.IDENTIFIER) {
+      if (!Trees.occursFree(body, variables.getValue()) && Trees.cannotFail(rand, scope)) {
+        Trees.replace(gamma, body);
+        changes++;
+      }
+      return;
+    }
+    if (variables.getType() != ASTNodeType.COMMA || rand.getType() != ASTNodeType.TAU
+        || countChildren(variables) != countChildren(rand))
+      return; // a mismatched arity is reported at run time
+
+    // Walk the names and the values of the tau in step, unlinking unused pairs
+    ASTNode previousVariable = null;
+    ASTNode previousElement = null;
+    ASTNode variable = variables.getChild();
+    ASTNode element = rand.getChild();
+    int remaining = 0;
+    int removed = 0;
+    while (variable != null && element != null) {
+      ASTNode nextVariable = variable.getSibling();
+      ASTNode nextElement = element.getSibling();
+      if (!Trees.occursFree(body, variable.getValue()) && Trees.cannotFail(element, scope)) {
+        if (previousVariable == null) {
+          variables.setChild(nextVariable);
+          rand.setChild(nextElement);
+        } else {
+          previousVariable.setSibling(nextVariable);
+          previousElement.setSibling(nextElement);
+        }
+        removed++;
+      } else {
+        previousVariable = variable;
+        previousElement = element;
+        remaining++;
+      }
+      variable = nextVariable;
+      element = nextElement;
+    }
+    if (removed == 0)
+      return;
+    changes += removed;
+    if (remaining == 0) {
+      Trees.replace(gamma, body);
+    } else if (remaining == 1) {
+      // A single name binds the whole value, so unwrap both the comma and the tau
+      ASTNode onlyVariable = variables.getChild();
+      onlyVariable.setSibling(body);
+      lambda.setChild(onlyVariable);
+      ASTNode onlyElement = rand.getChild();
+      Trees.replace(rand, onlyElement);
+    }
+  }
+
+  private static int countChildren(ASTNode node) {
+    int count = 0;
+    for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+      count++;
+    return count;
+  }
+}
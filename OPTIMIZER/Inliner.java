@@ -0,0 +1,264 @@
+package OPTIMIZER;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import CSE_Machine.BuiltIn;
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// Inliner pass beta-reduces gamma (lambda x. E) V, which is what every let,
+// where and immediately applied fn standardizes to, by substituting V for x
+// in E. RPAL evaluates V before E, so V is only substituted when that cannot
+// be told apart:
+//
+//   - V is a literal or a variable, which may be copied any number of times;
+//   - V is a lambda, and x is only ever applied, never passed on or returned.
+//     The lambda is copied to each call site, within a size budget, and the
+//     calls then reduce in turn. A rec function is bound to Y* applied to a
+//     lambda rather than to a lambda, so its calls are never reduced;
+//   - V cannot fail (see Trees.cannotFail), such as a tuple of variables and
+//     lambdas, and x is used exactly once, outside any lambda or conditional
+//     arm, so V is still evaluated exactly once. An operator may fail, and
+//     moving it past a Print in E would change what the program prints, so
+//     it is never substituted.
+//
+// Substitution renames the lambdas of E that would capture a free variable of V.
+public class Inliner implements Pass {
+  // Largest lambda, in nodes, that is copied to its call sites
+  static final int SIZE_BUDGET = 40;
+  // Most nodes that copying one lambda to its call sites may add
+  static final int GROWTH_BUDGET = 400;
+  // Bound on the reductions of one run, in case they keep creating new ones
+  private static final int MAX_REWRITES = 100000;
+
+  private final BoundNames scope = new BoundNames();
+  private int changes;
+  private int freshNames;
+
+  // Uses of the variable being considered for substitution
+  private int uses;
+  private boolean escapes; // used other than as the rator of a gamma
+  private boolean guarded; // used inside a lambda or a conditional arm
+
+  @Override
+  public String getName() {
+    return "inlining";
+  }
+
+  @Override
+  public int run(ASTNode root) {
+    changes = 0;
+    inline(root);
+    return changes;
+  }
+
+  // Step of the walk once the children of a node have been inlined
+  private static final int REDUCE = 2;
+
+  private void inline(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.EXIT) {
+        scope.exit(node);
+      } else if (work.step() == REDUCE) {
+        if (node.getType() == ASTNodeType.GAMMA && changes < MAX_REWRITES && reduce(node)) {
+          changes++;
+          work.push(node, WorkStack.VISIT); // substituted lambdas may now be applied directly
+        }
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        scope.enter(node);
+        work.push(node, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(node), WorkStack.VISIT);
+      } else {
+        work.push(node, REDUCE);
+        work.pushChildren(node, WorkStack.VISIT);
+      }
+    }
+  }
+
+  // gamma (lambda x. E) V => E[V/x], and gamma (lambda (x, y). E) (tau V W) => E[V/x, W/y]
+  private boolean reduce(ASTNode gamma) {
+    ASTNode lambda = gamma.getChild();
+    if (lambda.getType() != ASTNodeType.LAMBDA)
+      return false;
+    ASTNode rand = lambda.getSibling();
+    ASTNode body = Trees.lambdaBody(lambda);
+    ASTNode variables = lambda.getChild();
+
+    Map<String, ASTNode> bindings = new HashMap<String, ASTNode>();
+    if (variables.getType() == ASTNodeType.IDENTIFIER) {
+      if (!canSubstitute(variables.getValue(), rand, body))
+        return false;
+      bindings.put(variables.getValue(), rand);
+    } else if (variables.getType() == ASTNodeType.COMMA && rand.getType() == ASTNodeType.TAU) {
+      ASTNode element = rand.getChild();
+      for (ASTNode variable = variables.getChild(); variable != null; variable = variable.getSibling()) {
+        if (element == null || !isTrivial(element) || bindings.containsKey(variable.getValue()))
+          return false;
+        bindings.put(variable.getValue(), element);
+        element = element.getSibling();
+      }
+      if (element != null)
+        return false;
+    } else {
+      return false;
+    }
+
+    Set<String> capturable = new HashSet<String>();
+    for (ASTNode value : bindings.values())
+      capturable.addAll(Trees.freeVariables(value));
+    substitute(body, bindings, capturable);
+    Trees.replace(gamma, body);
+    return true;
+  }
+
+  private boolean canSubstitute(String name, ASTNode value, ASTNode body) {
+    if (isTrivial(value))
+      return true;
+
+    uses = 0;
+    escapes = false;
+    guarded = false;
+    countUses(body, name);
+
+    if (value.getType() == ASTNodeType.LAMBDA) {
+      int size = Trees.size(value);
+      return uses == 0 || (!escapes && size <= SIZE_BUDGET && size * uses <= GROWTH_BUDGET);
+    }
+    return uses == 1 && !guarded && Trees.cannotFail(value, scope);
+  }
+
+  // A literal, or a variable that is bound or names a built-in function
+  private boolean isTrivial(ASTNode node) {
+    if (Trees.isConstant(node))
+      return true;
+    return node.getType() == ASTNodeType.IDENTIFIER
+        && (scope.contains(node.getValue()) || BuiltIn.lookup(node.getValue()) != null);
+  }
+
+  // Steps of the walk counting uses: whether a node is inside a lambda or a
+  // conditional arm
+  private static final int OUTSIDE = 0;
+  private static final int INSIDE = 1;
+
+  private void countUses(ASTNode root, String name) {
+    WorkStack work = new WorkStack();
+    work.push(root, OUTSIDE);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      int inside = work.step();
+      switch (node.getType()) {
+        case IDENTIFIER:
+          if (name.equals(node.getValue())) {
+            uses++;
+            escapes = true;
+            guarded |= inside == INSIDE;
+          }
+          break;
+        case LAMBDA:
+          if (!Trees.binds(node, name))
+            work.push(Trees.lambdaBody(node), INSIDE);
+          break;
+        case CONDITIONAL: {
+          ASTNode condition = node.getChild();
+          work.push(condition, inside);
+          work.push(condition.getSibling(), INSIDE);
+          work.push(condition.getSibling().getSibling(), INSIDE);
+          break;
+        }
+        case GAMMA: {
+          ASTNode rator = node.getChild();
+          if (rator.getType() == ASTNodeType.IDENTIFIER && name.equals(rator.getValue())) {
+            uses++;
+            guarded |= inside == INSIDE;
+          } else {
+            work.push(rator, inside);
+          }
+          work.push(rator.getSibling(), inside);
+          break;
+        }
+        default:
+          work.pushChildren(node, inside);
+      }
+    }
+  }
+
+  // Method to replace the free occurrences of the bound names in a tree by
+  // copies of their values, renaming any lambda that would capture one of the
+  // capturable names
+  private void substitute(ASTNode root, Map<String, ASTNode> rootBindings, Set<String> capturable) {
+    // Pairs of a node and the bindings still in force inside it
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    ArrayDeque<Map<String, ASTNode>> pendingBindings = new ArrayDeque<Map<String, ASTNode>>();
+    pending.push(root);
+    pendingBindings.push(rootBindings);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      Map<String, ASTNode> bindings = pendingBindings.pop();
+
+      if (node.getType() == ASTNodeType.IDENTIFIER) {
+        ASTNode value = bindings.get(node.getValue());
+        if (value != null) {
+          int line = node.getSourceLineNumber();
+          Trees.replace(node, Trees.copy(value));
+          if (node.getChild() == null)
+            node.setSourceLineNumber(line);
+        }
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        List<String> names = Trees.boundNames(node);
+        Map<String, ASTNode> inner = bindings;
+        for (String name : names) {
+          if (inner.containsKey(name)) {
+            if (inner == bindings)
+              inner = new HashMap<String, ASTNode>(bindings);
+            inner.remove(name);
+          }
+        }
+        if (inner.isEmpty())
+          continue;
+        for (String name : names)
+          if (capturable.contains(name))
+            rename(node, name);
+        pending.push(Trees.lambdaBody(node));
+        pendingBindings.push(inner);
+      } else {
+        // Pushed last to first, so that lambdas are renamed in program order
+        List<ASTNode> children = new ArrayList<ASTNode>();
+        for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+          children.add(child);
+        for (int i = children.size() - 1; i >= 0; i--) {
+          pending.push(children.get(i));
+          pendingBindings.push(bindings);
+        }
+      }
+    }
+  }
+
+  // Method to give a variable bound by a lambda a name no program can use
+  private void rename(ASTNode lambda, String name) {
+    String fresh = name + "$" + (++freshNames);
+    ASTNode variables = lambda.getChild();
+    if (variables.getType() != ASTNodeType.COMMA) {
+      variables.setValue(fresh);
+    } else {
+      for (ASTNode variable = variables.getChild(); variable != null; variable = variable.getSibling())
+        if (name.equals(variable.getValue()))
+          variable.setValue(fresh);
+    }
+
+    ASTNode identifier = new ASTNode();
+    identifier.setType(ASTNodeType.IDENTIFIER);
+    identifier.setValue(fresh);
+    Map<String, ASTNode> renaming = new HashMap<String, ASTNode>();
+    renaming.put(name, identifier);
+    substitute(Trees.lambdaBody(lambda), renaming, new HashSet<String>());
+  }
+}
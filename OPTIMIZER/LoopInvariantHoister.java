@@ -0,0 +1,253 @@
+package OPTIMIZER;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// LoopInvariantHoister pass moves the subexpressions of a rec function that
+// use none of its variables out of the Y* fixed point, so they are evaluated
+// once where the function is defined instead of on every call:
+//
+//   Y* (lambda f. lambda x. ... S ...) => gamma (lambda v. Y* (lambda f. lambda x. ... v ...)) S
+//
+// Only what cannot fail is moved: a lambda, a rec function, or a tuple of
+// those, literals and declared names, and a pure built-in applied to an
+// operand of the kind it takes, such as Order applied to a name let-bound to
+// a tuple. Evaluating it early can then never be told apart from evaluating
+// it on each call, even where the function is never called or the expression
+// sits in a conditional arm. An operator or another application may fail on
+// the wrong operands, so it is left where it is.
+public class LoopInvariantHoister implements Pass {
+  private final BoundNames scope = new BoundNames();
+  // The value each name in scope is let-bound to, for the names bound to a
+  // tuple or a literal
+  private final Map<String, ASTNode> knownValues = new HashMap<String, ASTNode>();
+  private int changes;
+  private int freshNames;
+
+  // Names bound inside the rec function being processed, and what it hoists
+  private BoundNames local;
+  private List<String> names;
+  private List<ASTNode> values;
+
+  @Override
+  public String getName() {
+    return "loop-invariants";
+  }
+
+  @Override
+  public int run(ASTNode root) {
+    changes = 0;
+    visit(root);
+    return changes;
+  }
+
+  // Steps of the walks: hoist from a rec function once its children are
+  // processed, and walk the body of a let once its value is walked
+  private static final int HOIST = 2;
+  private static final int LET_BODY = 3;
+
+  private void visit(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.EXIT) {
+        exitScope(node);
+      } else if (work.step() == HOIST) {
+        if (isRecursiveFunction(node))
+          hoistFrom(node);
+      } else if (work.step() == LET_BODY) {
+        // let x = V in E: the body is searched once V is, knowing what x is bound to
+        ASTNode rator = node.getChild();
+        enterScope(rator, rator.getSibling());
+        work.push(rator, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(rator), WorkStack.VISIT);
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        enterScope(node, null);
+        work.push(node, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(node), WorkStack.VISIT);
+      } else if (node.getType() == ASTNodeType.GAMMA && node.getChild().getType() == ASTNodeType.LAMBDA) {
+        work.push(node, LET_BODY);
+        work.push(node.getChild().getSibling(), WorkStack.VISIT);
+      } else {
+        // Inner rec functions go first, so what they hoist can move further out
+        work.push(node, HOIST);
+        work.pushChildren(node, WorkStack.VISIT);
+      }
+    }
+  }
+
+  private void hoistFrom(ASTNode rec) {
+    ASTNode recLambda = rec.getChild().getSibling();
+    ASTNode function = Trees.lambdaBody(recLambda);
+    local = new BoundNames();
+    names = new ArrayList<String>();
+    values = new ArrayList<ASTNode>();
+
+    enter(recLambda, null);
+    enter(function, null);
+    find(Trees.lambdaBody(function));
+    exit(function);
+    exit(recLambda);
+
+    // Bound in reverse, so the values are evaluated in the order they occurred
+    for (int i = names.size() - 1; i >= 0; i--)
+      Trees.bind(rec, names.get(i), values.get(i));
+    changes += names.size();
+  }
+
+  // Method to hoist the invariant subexpressions of a tree
+  private void find(ASTNode root) {
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.EXIT) {
+        exit(node);
+      } else if (work.step() == LET_BODY) {
+        ASTNode rator = node.getChild();
+        enter(rator, rator.getSibling());
+        work.push(rator, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(rator), WorkStack.VISIT);
+      } else if (isHoistable(node)) {
+        Trees.makeLeaf(node, ASTNodeType.IDENTIFIER, hoist(node));
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        enter(node, null);
+        work.push(node, WorkStack.EXIT);
+        work.push(Trees.lambdaBody(node), WorkStack.VISIT);
+      } else if (node.getType() == ASTNodeType.GAMMA && node.getChild().getType() == ASTNodeType.LAMBDA) {
+        ASTNode rator = node.getChild();
+        ASTNode rand = rator.getSibling();
+        if (rator.getChild().getType() == ASTNodeType.IDENTIFIER && isHoistable(rand)) {
+          // let x = S in E => E[v/x], with S bound to v outside
+          String name = hoist(rand);
+          ASTNode body = Trees.lambdaBody(rator);
+          rename(body, rator.getChild().getValue(), name);
+          Trees.replace(node, body);
+          work.push(node, WorkStack.VISIT);
+        } else {
+          work.push(node, LET_BODY);
+          work.push(rand, WorkStack.VISIT);
+        }
+      } else {
+        work.pushChildren(node, WorkStack.VISIT);
+      }
+    }
+  }
+
+  // Method to record a subexpression to be bound outside, and get its name
+  private String hoist(ASTNode node) {
+    String name = "inv$" + (++freshNames);
+    values.add(Trees.copy(node));
+    names.add(name);
+    return name;
+  }
+
+  // Method to rename the free occurrences of a variable; the new name is
+  // fresh, so it cannot be captured
+  private static void rename(ASTNode root, String from, String to) {
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      if (node.getType() == ASTNodeType.IDENTIFIER) {
+        if (from.equals(node.getValue()))
+          node.setValue(to);
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        if (!Trees.binds(node, from))
+          pending.push(Trees.lambdaBody(node));
+      } else {
+        for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+          pending.push(child);
+      }
+    }
+  }
+
+  private boolean isHoistable(ASTNode node) {
+    // A variable or a literal costs nothing to evaluate; the cheaper test of
+    // the two that follow goes first, as it rules out most nodes
+    if (node.getChild() == null || !(Trees.cannotFail(node, scope) || isSafeApplication(node)))
+      return false;
+    for (String name : Trees.freeVariables(node))
+      if (local.contains(name))
+        return false;
+    return true;
+  }
+
+  // Method to check whether a node applies a pure built-in to an operand it
+  // cannot fail on: Order or Null to a tuple, Stem or Stern to a string, ItoS
+  // to an integer, or a type test to anything that cannot fail itself
+  private boolean isSafeApplication(ASTNode node) {
+    if (node.getType() != ASTNodeType.GAMMA)
+      return false;
+    ASTNode rator = node.getChild();
+    ASTNode rand = rator.getSibling();
+    if (rator.getType() != ASTNodeType.IDENTIFIER || scope.contains(rator.getValue())
+        || !Trees.isPureBuiltIn(rator.getValue()) || !Trees.cannotFail(rand, scope))
+      return false;
+    ASTNode value = rand;
+    if (rand.getType() == ASTNodeType.IDENTIFIER && knownValues.containsKey(rand.getValue()))
+      value = knownValues.get(rand.getValue());
+    switch (rator.getValue()) {
+      case "Order":
+      case "Null":
+        return value.getType() == ASTNodeType.TAU || value.getType() == ASTNodeType.NIL
+            || value.getType() == ASTNodeType.AUG;
+      case "Stem":
+      case "Stern":
+        return value.getType() == ASTNodeType.STRING;
+      case "ItoS":
+        return value.getType() == ASTNodeType.INTEGER;
+      case "Conc":
+      case "conc":
+        return false; // it takes a second operand, which is not checked here
+      default:
+        return true; // Isinteger, Isstring, ... hold a truthvalue for any operand
+    }
+  }
+
+  private void enter(ASTNode lambda, ASTNode value) {
+    local.enter(lambda);
+    enterScope(lambda, value);
+  }
+
+  private void exit(ASTNode lambda) {
+    local.exit(lambda);
+    exitScope(lambda);
+  }
+
+  // Method to bring a lambda's names into scope; value is what a let binds its
+  // single name to, or null. A let binding to an aug is taken to bind a
+  // tuple, since the body is only evaluated once the aug has succeeded.
+  private void enterScope(ASTNode lambda, ASTNode value) {
+    scope.enter(lambda);
+    for (String name : Trees.boundNames(lambda))
+      knownValues.remove(name);
+    if (value != null && lambda.getChild().getType() == ASTNodeType.IDENTIFIER
+        && (value.getType() == ASTNodeType.TAU || value.getType() == ASTNodeType.AUG || Trees.isConstant(value)))
+      knownValues.put(lambda.getChild().getValue(), value);
+  }
+
+  // An outer value of a name shadowed by the lambda is not remembered, so it
+  // is no longer known once the lambda has been left
+  private void exitScope(ASTNode lambda) {
+    scope.exit(lambda);
+    for (String name : Trees.boundNames(lambda))
+      knownValues.remove(name);
+  }
+
+  // Y* (lambda f. lambda x. E)
+  private static boolean isRecursiveFunction(ASTNode node) {
+    if (node.getType() != ASTNodeType.GAMMA || node.getChild().getType() != ASTNodeType.YSTAR)
+      return false;
+    ASTNode recLambda = node.getChild().getSibling();
+    return recLambda.getType() == ASTNodeType.LAMBDA && recLambda.getChild().getType() == ASTNodeType.IDENTIFIER
+        && Trees.lambdaBody(recLambda).getType() == ASTNodeType.LAMBDA;
+  }
+}
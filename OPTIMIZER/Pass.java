@@ -0,0 +1,19 @@
+package OPTIMIZER;
+
+import PARSER.ASTNode;
+
+// Pass interface is implemented by every optimisation run by the PassManager.
+// A pass rewrites the standardized tree in place; the root node itself is
+// never replaced, only its contents.
+public interface Pass {
+  // Get the name the pass is reported under
+  String getName();
+
+  // Optimise the tree rooted at root and get the number of rewrites made
+  int run(ASTNode root);
+
+  // Get what the number returned by run counts, for the statistics
+  default String getChangeLabel() {
+    return "changes";
+  }
+}
@@ -0,0 +1,60 @@
+package OPTIMIZER;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import PARSER.AST;
+
+// PassManager class runs the optimisation passes enabled at an optimisation
+// level over a standardized AST, before its deltas are created, and records
+// how long each pass took and how it changed the size of the tree.
+//
+//   -O0  no optimisation
+//   -O1  constant folding and propagation, then dead code elimination (the default)
+//   -O2  as -O1, with inlining, another round of folding, common subexpression
+//        elimination and loop-invariant hoisting before dead code elimination
+public class PassManager {
+  public static final int DEFAULT_LEVEL = 1;
+  public static final int MAX_LEVEL = 2;
+
+  private final List<Pass> passes = new ArrayList<Pass>();
+  private final List<String> statistics = new ArrayList<String>();
+
+  public PassManager(int level) {
+    if (level < 0 || level > MAX_LEVEL)
+      throw new IllegalArgumentException("No optimisation level " + level);
+    if (level >= 1)
+      passes.add(new ConstantFolder());
+    if (level >= 2) {
+      passes.add(new Inliner());
+      passes.add(new ConstantFolder()); // inlining exposes new constant operands
+      passes.add(new CommonSubexpressionEliminator());
+      passes.add(new LoopInvariantHoister()); // shared subexpressions may be invariant
+    }
+    if (level >= 1)
+      passes.add(new DeadCodeEliminator());
+  }
+
+  // Method to run every pass in order over the given AST
+  public void optimize(AST ast) {
+    if (!ast.isStandardized())  // Check if the AST has been standardized
+      throw new RuntimeException("ERROR: AST has not been Standardized!");
+
+    for (Pass pass : passes) {
+      int nodesBefore = Trees.size(ast.getRoot());
+      long start = System.nanoTime();
+      int changes = pass.run(ast.getRoot());
+      long elapsed = System.nanoTime() - start;
+      int nodesAfter = Trees.size(ast.getRoot());
+      statistics.add(String.format("%-20s %8.3f ms %7d -> %7d nodes %6d %s", pass.getName(),
+          elapsed / 1e6, nodesBefore, nodesAfter, changes, pass.getChangeLabel()));
+    }
+  }
+
+  // Method to print one line of statistics for every pass that has run
+  public void printStatistics(PrintStream out) {
+    for (String line : statistics)
+      out.println(line);
+  }
+}
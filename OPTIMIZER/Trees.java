@@ -0,0 +1,230 @@
+package OPTIMIZER;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import CSE_Machine.BuiltIn;
+import PARSER.ASTNode;
+import PARSER.ASTNodeType;
+
+// Trees class holds the tree manipulations shared by the optimisation passes.
+// Nodes are rewritten in place, since a node does not know its parent.
+final class Trees {
+  // Built-in functions whose applications neither print nor loop
+  private static final Set<String> PURE_BUILT_INS = new HashSet<String>(Arrays.asList("Order", "Null",
+      "Isinteger", "Isstring", "Istuple", "Isdummy", "Istruthvalue", "Isfunction", "Stem", "Stern", "ItoS",
+      "Conc", "conc"));
+
+  private Trees() {
+  }
+
+  // Method to check whether a name is a built-in function without effects
+  static boolean isPureBuiltIn(String name) {
+    return PURE_BUILT_INS.contains(name);
+  }
+
+  // Method to check whether a node is a literal constant
+  static boolean isConstant(ASTNode node) {
+    switch (node.getType()) {
+      case INTEGER:
+      case STRING:
+      case TRUE:
+      case FALSE:
+      case NIL:
+      case DUMMY:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  // Method to check whether evaluating a tree can neither fail nor print: a
+  // literal, a bound variable or built-in, a lambda, a rec function (Y*
+  // applied to a lambda) or a tuple of those
+  static boolean cannotFail(ASTNode root, BoundNames scope) {
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      switch (node.getType()) {
+        case LAMBDA:
+          break;
+        case IDENTIFIER:
+          if (!scope.contains(node.getValue()) && BuiltIn.lookup(node.getValue()) == null)
+            return false;
+          break;
+        case TAU:
+          for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+            pending.push(child);
+          break;
+        case GAMMA:
+          if (node.getChild().getType() != ASTNodeType.YSTAR
+              || node.getChild().getSibling().getType() != ASTNodeType.LAMBDA)
+            return false;
+          break;
+        default:
+          if (!isConstant(node))
+            return false;
+      }
+    }
+    return true;
+  }
+
+  // Method to turn a node into a leaf of the given type and value
+  static void makeLeaf(ASTNode node, ASTNodeType type, String value) {
+    node.setType(type);
+    node.setValue(value);
+    node.setChild(null);
+  }
+
+  // Method to overwrite a node with the contents of another, keeping its sibling
+  static void replace(ASTNode node, ASTNode replacement) {
+    node.setType(replacement.getType());
+    node.setValue(replacement.getValue());
+    node.setChild(replacement.getChild());
+    node.setSourceLineNumber(replacement.getSourceLineNumber());
+  }
+
+  // Method to bind a value to a name around a tree: node => gamma (lambda name. node) value
+  static void bind(ASTNode node, String name, ASTNode value) {
+    ASTNode inner = new ASTNode();
+    replace(inner, node);
+    ASTNode variable = new ASTNode();
+    variable.setType(ASTNodeType.IDENTIFIER);
+    variable.setValue(name);
+    variable.setSourceLineNumber(node.getSourceLineNumber());
+    variable.setSibling(inner);
+    ASTNode lambda = new ASTNode();
+    lambda.setType(ASTNodeType.LAMBDA);
+    lambda.setSourceLineNumber(node.getSourceLineNumber());
+    lambda.setChild(variable);
+    lambda.setSibling(value);
+    node.setType(ASTNodeType.GAMMA);
+    node.setValue(null);
+    node.setChild(lambda);
+  }
+
+  // Method to get the body of a lambda, which follows its bound variables
+  static ASTNode lambdaBody(ASTNode lambda) {
+    return lambda.getChild().getSibling();
+  }
+
+  // Method to get the names bound by a lambda
+  static List<String> boundNames(ASTNode lambda) {
+    List<String> names = new ArrayList<String>();
+    ASTNode variables = lambda.getChild();
+    if (variables.getType() == ASTNodeType.COMMA) {
+      for (ASTNode variable = variables.getChild(); variable != null; variable = variable.getSibling())
+        names.add(variable.getValue());
+    } else if (variables.getType() == ASTNodeType.IDENTIFIER) {
+      names.add(variables.getValue());
+    }
+    return names;
+  }
+
+  // Method to check whether a lambda binds the given name
+  static boolean binds(ASTNode lambda, String name) {
+    ASTNode variables = lambda.getChild();
+    if (variables.getType() != ASTNodeType.COMMA)
+      return name.equals(variables.getValue());
+    for (ASTNode variable = variables.getChild(); variable != null; variable = variable.getSibling())
+      if (name.equals(variable.getValue()))
+        return true;
+    return false;
+  }
+
+  // Method to count the nodes of a tree
+  static int size(ASTNode root) {
+    int count = 0;
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      count++;
+      for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+        pending.push(child);
+    }
+    return count;
+  }
+
+  // Method to copy a tree; the copy has no sibling
+  static ASTNode copy(ASTNode root) {
+    ASTNode rootCopy = copyNode(root);
+    // Pairs of a node and its copy, whose children are still to be copied
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(root);
+    pending.push(rootCopy);
+    while (!pending.isEmpty()) {
+      ASTNode copy = pending.pop();
+      ASTNode node = pending.pop();
+      ASTNode previous = null;
+      for (ASTNode child = node.getChild(); child != null; child = child.getSibling()) {
+        ASTNode childCopy = copyNode(child);
+        if (previous == null)
+          copy.setChild(childCopy);
+        else
+          previous.setSibling(childCopy);
+        previous = childCopy;
+        pending.push(child);
+        pending.push(childCopy);
+      }
+    }
+    return rootCopy;
+  }
+
+  private static ASTNode copyNode(ASTNode node) {
+    ASTNode copy = new ASTNode();
+    copy.setType(node.getType());
+    copy.setValue(node.getValue());
+    copy.setSourceLineNumber(node.getSourceLineNumber());
+    return copy;
+  }
+
+  // Method to get the names that occur free in a tree
+  static Set<String> freeVariables(ASTNode root) {
+    Set<String> free = new HashSet<String>();
+    BoundNames bound = new BoundNames();
+    WorkStack work = new WorkStack();
+    work.push(root, WorkStack.VISIT);
+    while (!work.isEmpty()) {
+      ASTNode node = work.pop();
+      if (work.step() == WorkStack.EXIT) {
+        bound.exit(node);
+      } else if (node.getType() == ASTNodeType.IDENTIFIER) {
+        if (!bound.contains(node.getValue()))
+          free.add(node.getValue());
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        bound.enter(node);
+        work.push(node, WorkStack.EXIT);
+        work.push(lambdaBody(node), WorkStack.VISIT);
+      } else {
+        work.pushChildren(node, WorkStack.VISIT);
+      }
+    }
+    return free;
+  }
+
+  // Method to check whether name occurs free in a tree
+  static boolean occursFree(ASTNode root, String name) {
+    ArrayDeque<ASTNode> pending = new ArrayDeque<ASTNode>();
+    pending.push(root);
+    while (!pending.isEmpty()) {
+      ASTNode node = pending.pop();
+      if (node.getType() == ASTNodeType.IDENTIFIER) {
+        if (name.equals(node.getValue()))
+          return true;
+      } else if (node.getType() == ASTNodeType.LAMBDA) {
+        if (!binds(node, name))
+          pending.push(lambdaBody(node));
+      } else {
+        for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+          pending.push(child);
+      }
+    }
+    return false;
+  }
+}
@@ -0,0 +1,59 @@
+package OPTIMIZER;
+
+import java.util.Arrays;
+
+import PARSER.ASTNode;
+
+// WorkStack class is the explicit stack the passes walk a tree with instead of
+// recursing, so that no depth of nesting can overflow the Java stack. Each
+// entry pairs a node with a step telling the pass what is left to do with it.
+final class WorkStack {
+  // Steps shared by the walks: visit a node, or leave the scope of a lambda.
+  // A pass numbers any further steps of its own from 2.
+  static final int VISIT = 0;
+  static final int EXIT = 1;
+
+  private ASTNode[] nodes = new ASTNode[64];
+  private int[] steps = new int[64];
+  private int top;
+  private int step;
+
+  void push(ASTNode node, int step) {
+    if (top == nodes.length) {
+      nodes = Arrays.copyOf(nodes, top * 2);
+      steps = Arrays.copyOf(steps, top * 2);
+    }
+    nodes[top] = node;
+    steps[top] = step;
+    top++;
+  }
+
+  // Method to push the children of a node so that they are popped first to last
+  void pushChildren(ASTNode node, int step) {
+    int start = top;
+    for (ASTNode child = node.getChild(); child != null; child = child.getSibling())
+      push(child, step);
+    for (int i = start, j = top - 1; i < j; i++, j--) {
+      ASTNode swap = nodes[i];
+      nodes[i] = nodes[j];
+      nodes[j] = swap;
+    }
+  }
+
+  boolean isEmpty() {
+    return top == 0;
+  }
+
+  // Method to take the top entry off; its step is then given by step()
+  ASTNode pop() {
+    top--;
+    ASTNode node = nodes[top];
+    nodes[top] = null;
+    step = steps[top];
+    return node;
+  }
+
+  int step() {
+    return step;
+  }
+}
@@ -1,321 +1,597 @@
 package PARSER;
 
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import java.util.Stack;
 
+import CSE_Machine.Address;
 import CSE_Machine.Beta;
+import CSE_Machine.BuiltIn;
 import CSE_Machine.Delta;
+import CSE_Machine.Literal;
+import CSE_Machine.RecDelta;
+import CSE_Machine.Tau;
+import SCANNER.SymbolTable;
 
 /*
   Represents an Abstract Syntax Tree (AST) with functionality to manage nodes and deltas.
-  The AST class encapsulates the root node of the tree, maintains a queue of pending delta bodies,
+  The AST class encapsulates the root node of the tree, maintains a stack of pending delta bodies,
   and tracks the standardization status. It also manages the current delta being processed,
-  the root delta, and the index of the delta.
+  the root delta, and the variables in scope while the deltas are built.
+
+  The tree is kept in an ASTArena, where it is printed, standardized and turned into deltas.
+  getRoot builds the ASTNode form of it for the optimisation passes, which then becomes the
+  tree until the deltas are created. The control structures of the deltas hold nodes of
+  their own, so the tree is not kept alive by them.
  */
 
 public class AST {
-  private ASTNode root;
-  private ArrayDeque<PendingDeltaBody> pendingDeltaBodyQueue;
+  private ASTNode root; // the tree, once getRoot has built it; null while it is in the arena
+  private ASTArena arena;
+  private int arenaRoot;
   private boolean standardized;
-  private Delta currentDelta;
+  private PendingDeltaBody currentDelta; // the delta whose body is being built
   private Delta rootOfDelta;
-  private int index;
+  private Bindings bindings;
 
   public AST(ASTNode node) {
     this.root = node;
   }
 
-  // there is a option which whenever inputed -ast, it will print the AST
-  public void printAST() {
-    preOrderPrint(root, "");
+  public AST(ASTArena arena, int root) {
+    this.arena = arena;
+    this.arenaRoot = root;
+  }
+
+  // Get the root node of the tree
+  public ASTNode getRoot() {
+    if (root == null) {
+      root = arena.toTree(arenaRoot);
+      arena = null;
+    }
+    return root;
   }
 
-  private void preOrderPrint(ASTNode node, String printPrefix) {
-    if (node == null)
-      return;
+  // Get the arena holding the tree, copying the tree into one if getRoot has built it
+  ASTArena getArena() {
+    if (arena == null) {
+      arena = ASTArena.fromTree(root);
+      arenaRoot = 0;
+      root = null;
+    }
+    return arena;
+  }
 
-    printASTNodeDetails(node, printPrefix);
-    preOrderPrint(node.getChild(), printPrefix + ".");
-    preOrderPrint(node.getSibling(), printPrefix);
+  // there is a option which whenever inputed -ast, it will print the AST
+  public void printAST() {
+    ASTArena arena = getArena();
+    List<String> prefixes = new ArrayList<String>();
+    prefixes.add("");
+    // Pre-order, with each node's depth; a node's sibling waits below its child
+    int[] pending = new int[32];
+    int top = 0;
+    pending[top++] = arenaRoot;
+    pending[top++] = 0;
+    while (top > 0) {
+      int depth = pending[--top];
+      int node = pending[--top];
+      while (prefixes.size() <= depth)
+        prefixes.add(prefixes.get(prefixes.size() - 1) + ".");
+      printASTNodeDetails(arena, node, prefixes.get(depth));
+
+      if (top + 4 > pending.length)
+        pending = Arrays.copyOf(pending, pending.length * 2);
+      if (arena.getSibling(node) != ASTArena.NONE) {
+        pending[top++] = arena.getSibling(node);
+        pending[top++] = depth;
+      }
+      if (arena.getChild(node) != ASTArena.NONE) {
+        pending[top++] = arena.getChild(node);
+        pending[top++] = depth + 1;
+      }
+    }
   }
 
-  private void printASTNodeDetails(ASTNode node, String printPrefix) {
-    if (node.getType() == ASTNodeType.IDENTIFIER ||
-        node.getType() == ASTNodeType.INTEGER) {
-      System.out.printf(printPrefix + node.getType().getPrintName() + "\n", node.getValue());
-    } else if (node.getType() == ASTNodeType.STRING)
-      System.out.printf(printPrefix + node.getType().getPrintName() + "\n", node.getValue());
+  private void printASTNodeDetails(ASTArena arena, int node, String printPrefix) {
+    ASTNodeType type = arena.getType(node);
+    if (type == ASTNodeType.IDENTIFIER ||
+        type == ASTNodeType.INTEGER) {
+      System.out.printf(printPrefix + type.getPrintName() + "\n", arena.getValue(node));
+    } else if (type == ASTNodeType.STRING)
+      System.out.printf(printPrefix + type.getPrintName() + "\n", arena.getValue(node));
     else
-      System.out.println(printPrefix + node.getType().getPrintName());
+      System.out.println(printPrefix + type.getPrintName());
   }
 
   // standardize the AST
   public void standardize() {
-    standardize(root);
+    standardize(getArena(), arenaRoot);
+    arena.trimToSize(); // standardizing is the last step that adds nodes
     standardized = true;
   }
 
-  private void standardize(ASTNode node) { // standardize the AST node and its children
-    if (node.getChild() != null) {
-      ASTNode childNode = node.getChild();
-      while (childNode != null) {
-        standardize(childNode);
-        childNode = childNode.getSibling();
+  // Standardize the tree under root in one post-order walk on an explicit
+  // stack, so that neither deep nor wide trees can overflow the Java stack. A
+  // node is pushed once to visit its children and once more, complemented, to
+  // be rewritten after them. Rewriting a node keeps it in place among its
+  // siblings, so the children pushed on the first visit stay valid.
+  private void standardize(ASTArena t, int root) {
+    int[] stack = new int[64];
+    int top = 0;
+    stack[top++] = root;
+    while (top > 0) {
+      int node = stack[--top];
+      if (node < 0) {
+        standardizeNode(t, ~node);
+        continue;
+      }
+      if (top == stack.length)
+        stack = Arrays.copyOf(stack, top * 2);
+      stack[top++] = ~node;
+      for (int childNode = t.getChild(node); childNode != ASTArena.NONE; childNode = t.getSibling(childNode)) {
+        if (top == stack.length)
+          stack = Arrays.copyOf(stack, top * 2);
+        stack[top++] = childNode;
       }
     }
+  }
 
-    switch (node.getType()) {
-      case LET:
-        // This block transforms a LET statement into a LAMBDA-GAMMA combination.
-        // It reorders the nodes to conform to the expected structure of a
-        // LAMBDA-GAMMA combination,
-        // where the left child becomes a LAMBDA node and the LET node itself becomes a
-        // GAMMA node.
-
-        ASTNode equalNode = node.getChild();
-        if (equalNode.getType() != ASTNodeType.EQUAL)
-          throw new StandardizeException(
-              "LET/WHERE statement expects an EQUAL node on the left, but found different structure.");
-        ASTNode e = equalNode.getChild().getSibling();
-        equalNode.getChild().setSibling(equalNode.getSibling());
-        equalNode.setSibling(e);
-        equalNode.setType(ASTNodeType.LAMBDA);
-        node.setType(ASTNodeType.GAMMA);
+  private void standardizeNode(ASTArena t, int node) { // standardize a node whose children are standardized
+    switch (t.getType(node)) {
+      case WHERE: {
+        // Standardize WHERE statement: Reorders nodes to convert WHERE into LET syntax,
+        // then standardizes the resulting LET node.
+        int equalNode = t.getSibling(t.getChild(node));
+        t.setSibling(t.getChild(node), ASTArena.NONE);
+        t.setSibling(equalNode, t.getChild(node));
+        t.setChild(node, equalNode);
+        t.setType(node, ASTNodeType.LET);
+        standardizeLet(t, node);
         break;
+      }
 
-      case WHERE:
-        // Standardize WHERE statement: Reorders nodes to convert WHERE into LET syntax
-        // by transforming it into a LET statement, then recursively standardizes the
-        // resulting LET node.
-        equalNode = node.getChild().getSibling();
-        node.getChild().setSibling(null);
-        equalNode.setSibling(node.getChild());
-        node.setChild(equalNode);
-        node.setType(ASTNodeType.LET);
-        standardize(node);
+      case LET:
+        standardizeLet(t, node);
         break;
 
-      case FCNFORM:
+      case FCNFORM: {
         // Syntax transformation: FCNFORM EQUAL -> Parameter Value+ Expression ->
         // Parameter + LAMBDA Expression
-        ASTNode childSibling = node.getChild().getSibling();
-        node.getChild().setSibling(constructLambdaChain(childSibling));
-        node.setType(ASTNodeType.EQUAL);
+        int childSibling = t.getSibling(t.getChild(node));
+        t.setSibling(t.getChild(node), constructLambdaChain(t, childSibling));
+        t.setType(node, ASTNodeType.EQUAL);
         break;
+      }
 
-      case AT:
+      case AT: {
         // Syntax transformation: AT GAMMA -> E1 N E2 GAMMA E2 -> N E1
-        ASTNode e1 = node.getChild();
-        ASTNode n = e1.getSibling();
-        ASTNode e2 = n.getSibling();
-        ASTNode gammaNode = new ASTNode();
-        gammaNode.setType(ASTNodeType.GAMMA);
-        gammaNode.setChild(n);
-        n.setSibling(e1);
-        e1.setSibling(null);
-        gammaNode.setSibling(e2);
-        node.setChild(gammaNode);
-        node.setType(ASTNodeType.GAMMA);
+        int e1 = t.getChild(node);
+        int n = t.getSibling(e1);
+        int e2 = t.getSibling(n);
+        int gammaNode = t.newNode(ASTNodeType.GAMMA, null, 0);
+        t.setChild(gammaNode, n);
+        t.setSibling(n, e1);
+        t.setSibling(e1, ASTArena.NONE);
+        t.setSibling(gammaNode, e2);
+        t.setChild(node, gammaNode);
+        t.setType(node, ASTNodeType.GAMMA);
         break;
+      }
 
-      case WITHIN:
+      case WITHIN: {
         // Syntax transformation: WITHIN EQUAL -> X2 GAMMA -> X1 E1 X2 E2 LAMBDA E1 ->
         // X1 E2
-        if (node.getChild().getType() != ASTNodeType.EQUAL
-            || node.getChild().getSibling().getType() != ASTNodeType.EQUAL)
+        int first = t.getChild(node);
+        int second = t.getSibling(first);
+        if (t.getType(first) != ASTNodeType.EQUAL || t.getType(second) != ASTNodeType.EQUAL)
           throw new StandardizeException(
               "WITHIN: One of the child nodes does not conform to the expected EQUAL structure.");
-        ASTNode x1 = node.getChild().getChild();
-        e1 = x1.getSibling();
-        ASTNode x2 = node.getChild().getSibling().getChild();
-        e2 = x2.getSibling();
-        ASTNode lambdaNode = new ASTNode();
-        lambdaNode.setType(ASTNodeType.LAMBDA);
-        x1.setSibling(e2);
-        lambdaNode.setChild(x1);
-        lambdaNode.setSibling(e1);
-        gammaNode = new ASTNode();
-        gammaNode.setType(ASTNodeType.GAMMA);
-        gammaNode.setChild(lambdaNode);
-        x2.setSibling(gammaNode);
-        node.setChild(x2);
-        node.setType(ASTNodeType.EQUAL);
+        int x1 = t.getChild(first);
+        int e1 = t.getSibling(x1);
+        int x2 = t.getChild(second);
+        int e2 = t.getSibling(x2);
+        int lambdaNode = t.newNode(ASTNodeType.LAMBDA, null, 0);
+        t.setSibling(x1, e2);
+        t.setChild(lambdaNode, x1);
+        t.setSibling(lambdaNode, e1);
+        int gammaNode = t.newNode(ASTNodeType.GAMMA, null, 0);
+        t.setChild(gammaNode, lambdaNode);
+        t.setSibling(x2, gammaNode);
+        t.setChild(node, x2);
+        t.setType(node, ASTNodeType.EQUAL);
         break;
+      }
 
-      case SIMULTDEF:
+      case SIMULTDEF: {
         // Syntax transformation: SIMULTDEF EQUAL -> COMMA TAU -> V1 E1, ..., Vn En ; ->
         // V1 E1, ..., Vn En
-        ASTNode commaNode = new ASTNode();
-        commaNode.setType(ASTNodeType.COMMA);
-        ASTNode tauNode = new ASTNode();
-        tauNode.setType(ASTNodeType.TAU);
-        ASTNode childNode = node.getChild();
-        while (childNode != null) {
-          commaTauNodes(childNode, commaNode, tauNode);
-          childNode = childNode.getSibling();
+        int commaNode = t.newNode(ASTNodeType.COMMA, null, 0);
+        int tauNode = t.newNode(ASTNodeType.TAU, null, 0);
+        int lastVariable = ASTArena.NONE;
+        int lastValue = ASTArena.NONE;
+        for (int childNode = t.getChild(node); childNode != ASTArena.NONE; childNode = t.getSibling(childNode)) {
+          if (t.getType(childNode) != ASTNodeType.EQUAL)
+            throw new StandardizeException(
+                "SIMULTDEF: One of the child nodes does not adhere to the expected EQUAL structure.");
+          int x = t.getChild(childNode);
+          int e = t.getSibling(x);
+          lastVariable = addChild(t, commaNode, lastVariable, x);
+          lastValue = addChild(t, tauNode, lastValue, e);
         }
-        commaNode.setSibling(tauNode);
-        node.setChild(commaNode);
-        node.setType(ASTNodeType.EQUAL);
+        t.setSibling(commaNode, tauNode);
+        t.setChild(node, commaNode);
+        t.setType(node, ASTNodeType.EQUAL);
         break;
+      }
 
-      case REC:
+      case REC: {
         // Standardize REC statement: Transforms a recursive definition into an
         // equivalent form for execution using Y combinator.
         // Syntax transformation: REC EQUAL -> X GAMMA -> X Y* LAMBDA -> X* GAMMA -> V1
         // E1, ..., Vn En
-        childNode = node.getChild();
-        if (childNode.getType() != ASTNodeType.EQUAL)
+        int childNode = t.getChild(node);
+        if (t.getType(childNode) != ASTNodeType.EQUAL)
           throw new StandardizeException("REC: The child node does not adhere to the expected EQUAL structure.");
-        ASTNode x = childNode.getChild();
-        lambdaNode = new ASTNode();
-        lambdaNode.setType(ASTNodeType.LAMBDA);
-        lambdaNode.setChild(x);
-        ASTNode yStarNode = new ASTNode();
-        yStarNode.setType(ASTNodeType.YSTAR);
-        yStarNode.setSibling(lambdaNode);
-        gammaNode = new ASTNode();
-        gammaNode.setType(ASTNodeType.GAMMA);
-        gammaNode.setChild(yStarNode);
-        ASTNode xWithSiblingGamma = new ASTNode();
-        xWithSiblingGamma.setChild(x.getChild());
-        xWithSiblingGamma.setSibling(gammaNode);
-        xWithSiblingGamma.setType(x.getType());
-        xWithSiblingGamma.setValue(x.getValue());
-        node.setChild(xWithSiblingGamma);
-        node.setType(ASTNodeType.EQUAL);
+        int x = t.getChild(childNode);
+        int lambdaNode = t.newNode(ASTNodeType.LAMBDA, null, 0);
+        t.setChild(lambdaNode, x);
+        int yStarNode = t.newNode(ASTNodeType.YSTAR, null, 0);
+        t.setSibling(yStarNode, lambdaNode);
+        int gammaNode = t.newNode(ASTNodeType.GAMMA, null, 0);
+        t.setChild(gammaNode, yStarNode);
+        int xWithSiblingGamma = t.copyNode(x);
+        t.setSourceLineNumber(xWithSiblingGamma, 0);
+        t.setChild(xWithSiblingGamma, t.getChild(x));
+        t.setSibling(xWithSiblingGamma, gammaNode);
+        t.setChild(node, xWithSiblingGamma);
+        t.setType(node, ASTNodeType.EQUAL);
         break;
+      }
 
-      case LAMBDA:
+      case LAMBDA: {
         // Standardize LAMBDA statement: Constructs a lambda chain for multiple
         // parameters.
         // Syntax transformation: LAMBDA -> V1 V2 ... Vn
-        childSibling = node.getChild().getSibling();
-        node.getChild().setSibling(constructLambdaChain(childSibling));
+        int childSibling = t.getSibling(t.getChild(node));
+        t.setSibling(t.getChild(node), constructLambdaChain(t, childSibling));
         break;
+      }
 
       default:
         break;
     }
   }
 
-  private void commaTauNodes(ASTNode equalNode, ASTNode commaNode, ASTNode tauNode) {
-    if (equalNode.getType() != ASTNodeType.EQUAL)
+  // Transform a LET statement into a LAMBDA-GAMMA combination: the left child
+  // becomes a LAMBDA node and the LET node itself becomes a GAMMA node. WHERE
+  // is rewritten into a LET first, and then transformed here too.
+  private void standardizeLet(ASTArena t, int node) {
+    int equalNode = t.getChild(node);
+    if (t.getType(equalNode) != ASTNodeType.EQUAL)
       throw new StandardizeException(
-          "SIMULTDEF: One of the child nodes does not adhere to the expected EQUAL structure.");
-    ASTNode x = equalNode.getChild();
-    ASTNode e = x.getSibling();
-    addChild(commaNode, x);
-    addChild(tauNode, e);
+          "LET/WHERE statement expects an EQUAL node on the left, but found different structure.");
+    int e = t.getSibling(t.getChild(equalNode));
+    t.setSibling(t.getChild(equalNode), t.getSibling(equalNode));
+    t.setSibling(equalNode, e);
+    t.setType(equalNode, ASTNodeType.LAMBDA);
+    t.setType(node, ASTNodeType.GAMMA);
   }
 
-  // Add a child node to the parent node
-  private void addChild(ASTNode parentNode, ASTNode childNode) {
-    if (parentNode.getChild() == null)
-      parentNode.setChild(childNode);
-    else {
-      ASTNode lastSibling = parentNode.getChild();
-      while (lastSibling.getSibling() != null)
-        lastSibling = lastSibling.getSibling();
-      lastSibling.setSibling(childNode);
-    }
-    childNode.setSibling(null);
+  // Add a child node after the last child of the parent node, and get the new last child
+  private int addChild(ASTArena t, int parentNode, int lastChild, int childNode) {
+    if (lastChild == ASTArena.NONE)
+      t.setChild(parentNode, childNode);
+    else
+      t.setSibling(lastChild, childNode);
+    t.setSibling(childNode, ASTArena.NONE);
+    return childNode;
   }
 
-  // Construct a lambda chain for multiple parameters
-  private ASTNode constructLambdaChain(ASTNode node) {
-    if (node.getSibling() == null)
+  // Construct a lambda chain for multiple parameters: V1 V2 ... Vn E becomes
+  // LAMBDA V1 (LAMBDA V2 ... (LAMBDA Vn E)), built in one walk down the list
+  private int constructLambdaChain(ASTArena t, int node) {
+    if (t.getSibling(node) == ASTArena.NONE)
       return node;
 
-    ASTNode lambdaNode = new ASTNode();
-    lambdaNode.setType(ASTNodeType.LAMBDA);
-    lambdaNode.setChild(node);
-    if (node.getSibling().getSibling() != null)
-      node.setSibling(constructLambdaChain(node.getSibling()));
+    int lambdaNode = t.newNode(ASTNodeType.LAMBDA, null, 0);
+    t.setChild(lambdaNode, node);
+    for (int variable = node; t.getSibling(t.getSibling(variable)) != ASTArena.NONE;) {
+      int next = t.getSibling(variable);
+      int innerLambda = t.newNode(ASTNodeType.LAMBDA, null, 0);
+      t.setChild(innerLambda, next);
+      t.setSibling(variable, innerLambda);
+      variable = next;
+    }
     return lambdaNode;
   }
 
   public Delta createDeltas() {
-    pendingDeltaBodyQueue = new ArrayDeque<PendingDeltaBody>();
-    index = 0;
-    currentDelta = createDelta(root);
-    processPendingDeltaStack();
+    ASTArena t = getArena();
+    bindings = new Bindings(SymbolTable.size());
+    PendingDeltaBody root = createDelta(t, arenaRoot, ASTArena.NONE);
+    rootOfDelta = root.delta;
+    processPendingDeltaStack(t, root);
+    numberDeltas(root);
     return rootOfDelta;
   }
 
-  private Delta createDelta(ASTNode startBodyNode) {
+  // Make a delta whose body starts at the given node, to be built once the body
+  // it appears in is done. recName is the name a rec function binds around it,
+  // or ASTArena.NONE.
+  private PendingDeltaBody createDelta(ASTArena t, int startBodyNode, int recName) {
+    Delta delta = new Delta();
     PendingDeltaBody pendingDelta = new PendingDeltaBody();
+    pendingDelta.delta = delta;
     pendingDelta.startNode = startBodyNode;
     pendingDelta.body = new Stack<ASTNode>();
-    pendingDeltaBodyQueue.add(pendingDelta);
+    pendingDelta.recName = recName;
+    if (currentDelta != null)
+      currentDelta.children.add(pendingDelta);
 
-    Delta delta = new Delta();
     delta.setCtrlStruct(pendingDelta.body);
-    delta.setIndex(index++);
-    currentDelta = delta;
-
-    if (startBodyNode == root)
-      rootOfDelta = currentDelta;
+    return pendingDelta;
+  }
 
-    return delta;
+  // Process the pending delta stack depth first, so that the variables of a
+  // delta are bound while every delta nested in it is built, and unbound once
+  // they all are
+  private void processPendingDeltaStack(ASTArena t, PendingDeltaBody root) {
+    ArrayDeque<PendingDeltaBody> pendingDeltaBodyStack = new ArrayDeque<PendingDeltaBody>();
+    pendingDeltaBodyStack.push(root);
+    while (!pendingDeltaBodyStack.isEmpty()) {
+      PendingDeltaBody pendingDeltaBody = pendingDeltaBodyStack.pop();
+      if (pendingDeltaBody.built) {
+        bindings.exit(pendingDeltaBody.recName == ASTArena.NONE ? 1 : 2);
+        continue;
+      }
+      if (pendingDeltaBody.recName != ASTArena.NONE) {
+        // the frame that binds a rec function's name encloses the function
+        bindings.enter();
+        bindings.bind(pendingDeltaBody.recName, 0);
+      }
+      bindings.enter();
+      Delta delta = pendingDeltaBody.delta;
+      for (int i = 0; i < delta.getBoundVarCount(); i++)
+        bindings.bind(delta.getBoundVar(i), i);
+
+      currentDelta = pendingDeltaBody;
+      buildDeltaBody(t, pendingDeltaBody.startNode, pendingDeltaBody.body);
+      currentDelta = null;
+
+      pendingDeltaBody.built = true;
+      pendingDeltaBodyStack.push(pendingDeltaBody);
+      for (int i = pendingDeltaBody.children.size() - 1; i >= 0; i--)
+        pendingDeltaBodyStack.push(pendingDeltaBody.children.get(i));
+    }
   }
 
-  // Process the pending delta stack
-  private void processPendingDeltaStack() {
-    while (!pendingDeltaBodyQueue.isEmpty()) {
-      PendingDeltaBody pendingDeltaBody = pendingDeltaBodyQueue.pop();
-      buildDeltaBody(pendingDeltaBody.startNode, pendingDeltaBody.body);
+  // Number the deltas breadth first, the root delta first and the deltas
+  // nested in each body in the order they appear there
+  private void numberDeltas(PendingDeltaBody root) {
+    ArrayDeque<PendingDeltaBody> queue = new ArrayDeque<PendingDeltaBody>();
+    queue.add(root);
+    int index = 0;
+    while (!queue.isEmpty()) {
+      PendingDeltaBody pendingDeltaBody = queue.remove();
+      pendingDeltaBody.delta.setIndex(index++);
+      queue.addAll(pendingDeltaBody.children);
     }
   }
 
-  private void buildDeltaBody(ASTNode node, Stack<ASTNode> body) {
+  private void buildDeltaBody(ASTArena t, int root, Stack<ASTNode> rootBody) {
     /**
-     * Recursively builds the delta body stack for the given AST node, handling
-     * special cases for lambda and conditional nodes.
+     * Builds the delta body stack for the given AST node, handling special
+     * cases for lambda and conditional nodes. The nodes still to be built are
+     * kept on an explicit stack, each with the stack its elements go to, so
+     * that no depth of nesting can overflow the Java stack.
      * 
-     * @param node The current AST node being processed.
-     * @param body The stack to which the delta body nodes are pushed.
+     * @param root The AST node the body starts at.
+     * @param rootBody The stack to which the delta body nodes are pushed.
      */
-    if (node.getType() == ASTNodeType.LAMBDA) {
-      Delta d = createDelta(node.getChild().getSibling());
-      if (node.getChild().getType() == ASTNodeType.COMMA) {
-        ASTNode commaNode = node.getChild();
-        ASTNode childNode = commaNode.getChild();
-        while (childNode != null) {
-          d.appendBddVars(childNode.getValue());
-          childNode = childNode.getSibling();
-        }
-      } else
-        d.appendBddVars(node.getChild().getValue());
-      body.push(d);
-      return;
-    } else if (node.getType() == ASTNodeType.CONDITIONAL) {
-      ASTNode conditionNode = node.getChild();
-      ASTNode thenNode = conditionNode.getSibling();
-      ASTNode elseNode = thenNode.getSibling();
-      Beta betaNode = new Beta();
+    int[] pending = new int[64];
+    List<Stack<ASTNode>> pendingBody = new ArrayList<Stack<ASTNode>>();
+    int top = 0;
+    pending[top++] = root;
+    pendingBody.add(rootBody);
+    while (top > 0) {
+      int node = pending[--top];
+      Stack<ASTNode> body = pendingBody.remove(top);
+      if (top + 3 > pending.length)
+        pending = Arrays.copyOf(pending, pending.length * 2);
+
+      ASTNodeType type = t.getType(node);
+      if (type == ASTNodeType.LAMBDA) {
+        body.push(createLambdaDelta(t, node, ASTArena.NONE));
+        continue;
+      } else if (isRecursiveFunction(t, node)) {
+        // Y* (lambda f. lambda ...): the inner lambda is closed over a frame
+        // that binds f, which the machine fills with the closure itself
+        int recLambda = t.getSibling(t.getChild(node));
+        int recName = t.getSymbol(t.getChild(recLambda));
+        Delta d = createLambdaDelta(t, t.getSibling(t.getChild(recLambda)), recName);
+        body.push(new RecDelta(element(t, node), d));
+        continue;
+      } else if (type == ASTNodeType.CONDITIONAL) {
+        int conditionNode = t.getChild(node);
+        int thenNode = t.getSibling(conditionNode);
+        int elseNode = t.getSibling(thenNode);
+        Beta betaNode = new Beta();
+        betaNode.setSourceLineNumber(t.getSourceLineNumber(node));
+
+        // The arms build into the beta, not the body, so the beta can go on
+        // the body first; the arms are still built before the condition
+        body.push(betaNode);
+        pending[top++] = conditionNode;
+        pendingBody.add(body);
+        pending[top++] = elseNode;
+        pendingBody.add(betaNode.getELSE());
+        pending[top++] = thenNode;
+        pendingBody.add(betaNode.getTHEN());
+        continue;
+      } else if (Literal.isLiteral(type)) {
+        // constants are converted to runtime values once, here, rather than on every evaluation
+        body.push(new Literal(element(t, node)));
+        continue;
+      } else if (type == ASTNodeType.IDENTIFIER) {
+        body.push(resolveIdentifier(t, node));
+        continue;
+      }
 
-      buildDeltaBody(thenNode, betaNode.getTHEN());
-      buildDeltaBody(elseNode, betaNode.getELSE());
+      int size = 0;
+      for (int childNode = t.getChild(node); childNode != ASTArena.NONE; childNode = t.getSibling(childNode))
+        size++;
+      if (type == ASTNodeType.TAU)
+        body.push(new Tau(size, t.getSourceLineNumber(node)));
+      else
+        body.push(element(t, node));
+
+      // The children are pushed last to first, so they are built first to last
+      if (top + size > pending.length)
+        pending = Arrays.copyOf(pending, Math.max(pending.length * 2, top + size));
+      int childNode = t.getChild(node);
+      for (int i = top + size - 1; i >= top; i--) {
+        pending[i] = childNode;
+        childNode = t.getSibling(childNode);
+      }
+      for (int i = 0; i < size; i++)
+        pendingBody.add(body);
+      top += size;
+    }
+  }
 
-      body.push(betaNode);
+  // Make a control structure element for a node, without its children
+  private ASTNode element(ASTArena t, int node) {
+    ASTNode element = new ASTNode();
+    element.setType(t.getType(node));
+    element.setValue(t.getValue(node));
+    element.setSourceLineNumber(t.getSourceLineNumber(node));
+    return element;
+  }
 
-      buildDeltaBody(conditionNode, body);
+  private Delta createLambdaDelta(ASTArena t, int lambda, int recName) {
+    int variable = t.getChild(lambda);
+    Delta d = createDelta(t, t.getSibling(variable), recName).delta;
+    if (t.getType(variable) == ASTNodeType.COMMA) {
+      int childNode = t.getChild(variable);
+      while (childNode != ASTArena.NONE) {
+        d.appendBddVar(t.getSymbol(childNode));
+        childNode = t.getSibling(childNode);
+      }
+    } else
+      d.appendBddVar(t.getSymbol(variable));
+    return d;
+  }
 
-      return;
-    }
+  // Check whether a node is Y* applied to a lambda of one variable whose body
+  // is a lambda, as "rec f x = ..." standardizes to
+  private boolean isRecursiveFunction(ASTArena t, int node) {
+    if (t.getType(node) != ASTNodeType.GAMMA || t.getType(t.getChild(node)) != ASTNodeType.YSTAR)
+      return false;
+    int recLambda = t.getSibling(t.getChild(node));
+    return recLambda != ASTArena.NONE && t.getType(recLambda) == ASTNodeType.LAMBDA
+        && t.getType(t.getChild(recLambda)) == ASTNodeType.IDENTIFIER
+        && t.getType(t.getSibling(t.getChild(recLambda))) == ASTNodeType.LAMBDA;
+  }
 
-    body.push(node);
-    ASTNode childNode = node.getChild();
-    while (childNode != null) {
-      buildDeltaBody(childNode, body);
-      childNode = childNode.getSibling();
-    }
+  // Resolve an identifier to the lexical address of its binding, or to the
+  // built-in function it names. Anything else is left as an identifier and is
+  // reported as undeclared if it is ever evaluated.
+  private ASTNode resolveIdentifier(ASTArena t, int identifier) {
+    int symbol = t.getSymbol(identifier);
+    ASTNode node = element(t, identifier);
+    int binding = bindings.innermost(symbol);
+    if (binding >= 0)
+      return new Address(node, bindings.depth(binding), bindings.slot(binding));
+
+    BuiltIn builtIn = BuiltIn.lookup(symbol);
+    if (builtIn != null)
+      return new Literal(node, builtIn);
+    return node;
   }
 
   private class PendingDeltaBody {
+    Delta delta;
     Stack<ASTNode> body;
-    ASTNode startNode;
+    int startNode;
+    int recName; // the name of the rec function this is, or ASTArena.NONE
+    List<PendingDeltaBody> children = new ArrayList<PendingDeltaBody>(); // the deltas in the body
+    boolean built;
+  }
+
+  // Bindings class keeps the variables in scope while delta bodies are built.
+  // There is a frame for each environment the body will run in: the bound
+  // variables of a delta, or the one name of a rec function. Every binding
+  // remembers the binding of the same symbol it shadows, so the innermost
+  // binding of a symbol is found in one array read, and is restored when the
+  // frame is left.
+  private static class Bindings {
+    private int[] innermost; // by SymbolTable id: the innermost binding, or -1
+    private int[] symbols = new int[64];
+    private int[] frames = new int[64]; // the frame each binding is in, counted from the outermost
+    private int[] slots = new int[64];
+    private int[] shadowed = new int[64];
+    private int count;
+    private int[] frameStarts = new int[16]; // the first binding of each open frame
+    private int depth;
+
+    Bindings(int symbolCount) {
+      innermost = new int[Math.max(symbolCount, 1)];
+      Arrays.fill(innermost, -1);
+    }
+
+    void enter() {
+      if (depth == frameStarts.length)
+        frameStarts = Arrays.copyOf(frameStarts, depth * 2);
+      frameStarts[depth++] = count;
+    }
+
+    // Leave the given number of frames, unbinding their variables
+    void exit(int frameCount) {
+      depth -= frameCount;
+      while (count > frameStarts[depth]) {
+        count--;
+        innermost[symbols[count]] = shadowed[count];
+      }
+    }
+
+    // Bind the symbol to the given slot of the innermost frame. A later
+    // binding of the same symbol in a frame shadows an earlier one.
+    void bind(int symbol, int slot) {
+      if (symbol < 0)
+        return; // the () of "fn () . E" binds no name
+      if (symbol >= innermost.length) {
+        int length = innermost.length;
+        innermost = Arrays.copyOf(innermost, Math.max(length * 2, symbol + 1));
+        Arrays.fill(innermost, length, innermost.length, -1);
+      }
+      if (count == symbols.length) {
+        symbols = Arrays.copyOf(symbols, count * 2);
+        frames = Arrays.copyOf(frames, count * 2);
+        slots = Arrays.copyOf(slots, count * 2);
+        shadowed = Arrays.copyOf(shadowed, count * 2);
+      }
+      symbols[count] = symbol;
+      frames[count] = depth - 1;
+      slots[count] = slot;
+      shadowed[count] = innermost[symbol];
+      innermost[symbol] = count++;
+    }
+
+    // Get the innermost binding of the symbol, or -1 if it is not bound
+    int innermost(int symbol) {
+      return symbol >= 0 && symbol < innermost.length ? innermost[symbol] : -1;
+    }
+
+    // Get the number of frames between the innermost frame and the binding's
+    int depth(int binding) {
+      return depth - 1 - frames[binding];
+    }
+
+    int slot(int binding) {
+      return slots[binding];
+    }
   }
 
   public boolean isStandardized() {
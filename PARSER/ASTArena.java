@@ -0,0 +1,181 @@
+package PARSER;
+
+import java.util.Arrays;
+
+import SCANNER.SymbolTable;
+
+// ASTArena class stores the nodes of an AST in parallel arrays instead of one
+// object per node: a node is an index into the arrays of types, first children,
+// next siblings, source lines and values. A value is held as its id in the
+// SymbolTable, so a name is stored once however many nodes it appears in. A
+// node costs 17 bytes in the arrays, against 32 bytes and a String of its own
+// for an ASTNode.
+//
+// The parser builds into an arena, and the AST is printed, standardized and
+// turned into deltas there. toTree builds the ASTNode form that the
+// optimisation passes work on, and fromTree turns it back.
+public final class ASTArena {
+  public static final int NONE = -1; // no child, no sibling, or no value
+
+  private static final ASTNodeType[] TYPES = ASTNodeType.values();
+
+  private byte[] types = new byte[1024];
+  private int[] children = new int[1024];
+  private int[] siblings = new int[1024];
+  private int[] lines = new int[1024];
+  private int[] values = new int[1024];
+  private int count;
+
+  // Method to add a node with no children or siblings, and get its index
+  public int newNode(ASTNodeType type, String value, int sourceLineNumber) {
+    return newNode(type, value == null ? NONE : SymbolTable.intern(value), sourceLineNumber);
+  }
+
+  // Method to add a node whose value has the given SymbolTable id, or none if it is NONE
+  public int newNode(ASTNodeType type, int symbol, int sourceLineNumber) {
+    if (count == types.length)
+      resize(count + (count >> 1) + 1);
+    types[count] = (byte) type.ordinal();
+    children[count] = NONE;
+    siblings[count] = NONE;
+    lines[count] = sourceLineNumber;
+    values[count] = symbol;
+    return count++;
+  }
+
+  private void resize(int capacity) {
+    types = Arrays.copyOf(types, capacity);
+    children = Arrays.copyOf(children, capacity);
+    siblings = Arrays.copyOf(siblings, capacity);
+    lines = Arrays.copyOf(lines, capacity);
+    values = Arrays.copyOf(values, capacity);
+  }
+
+  // Method to release the room kept for nodes not yet added
+  public void trimToSize() {
+    if (count < types.length)
+      resize(count);
+  }
+
+  public ASTNodeType getType(int node) {
+    return TYPES[types[node]];
+  }
+
+  public void setType(int node, ASTNodeType type) {
+    types[node] = (byte) type.ordinal();
+  }
+
+  public int getChild(int node) {
+    return children[node];
+  }
+
+  public void setChild(int node, int child) {
+    children[node] = child;
+  }
+
+  public int getSibling(int node) {
+    return siblings[node];
+  }
+
+  public void setSibling(int node, int sibling) {
+    siblings[node] = sibling;
+  }
+
+  public String getValue(int node) {
+    return values[node] == NONE ? null : SymbolTable.name(values[node]);
+  }
+
+  // Get the SymbolTable id of the value of a node, or NONE if it has no value
+  public int getSymbol(int node) {
+    return values[node];
+  }
+
+  public int getSourceLineNumber(int node) {
+    return lines[node];
+  }
+
+  public void setSourceLineNumber(int node, int sourceLineNumber) {
+    lines[node] = sourceLineNumber;
+  }
+
+  // Method to add a node with the type, value and source line of another one
+  public int copyNode(int node) {
+    return newNode(getType(node), values[node], lines[node]);
+  }
+
+  // Getter method for the number of nodes, including any no longer in the tree
+  public int size() {
+    return count;
+  }
+
+  // Method to get the bytes held by the arrays of the arena; the values
+  // themselves live in the SymbolTable
+  public long getMemoryUsed() {
+    return types.length * 17L;
+  }
+
+  // Method to build the ASTNode form of the tree under node
+  public ASTNode toTree(int node) {
+    ASTNode[] built = new ASTNode[count];
+    int[] pending = new int[16];
+    int top = 0;
+    pending[top++] = node;
+    built[node] = toNode(node);
+    while (top > 0) {
+      int parent = pending[--top];
+      ASTNode previous = null;
+      for (int child = children[parent]; child != NONE; child = siblings[child]) {
+        built[child] = toNode(child);
+        if (previous == null)
+          built[parent].setChild(built[child]);
+        else
+          previous.setSibling(built[child]);
+        previous = built[child];
+        if (top == pending.length)
+          pending = Arrays.copyOf(pending, top * 2);
+        pending[top++] = child;
+      }
+    }
+    return built[node];
+  }
+
+  private ASTNode toNode(int node) {
+    ASTNode treeNode = new ASTNode();
+    treeNode.setType(getType(node));
+    treeNode.setValue(getValue(node));
+    treeNode.setSourceLineNumber(lines[node]);
+    return treeNode;
+  }
+
+  // Method to copy the tree under root into a new arena, whose root is node 0
+  public static ASTArena fromTree(ASTNode root) {
+    ASTArena arena = new ASTArena();
+    ASTNode[] pending = new ASTNode[16];
+    int[] pendingIndex = new int[16];
+    int top = 0;
+    pending[top] = root;
+    pendingIndex[top++] = arena.newNode(root.getType(), root.getValue(), root.getSourceLineNumber());
+    while (top > 0) {
+      top--;
+      ASTNode parent = pending[top];
+      int parentIndex = pendingIndex[top];
+      pending[top] = null;
+      int previous = NONE;
+      for (ASTNode child = parent.getChild(); child != null; child = child.getSibling()) {
+        int index = arena.newNode(child.getType(), child.getValue(), child.getSourceLineNumber());
+        if (previous == NONE)
+          arena.children[parentIndex] = index;
+        else
+          arena.siblings[previous] = index;
+        previous = index;
+        if (top == pending.length) {
+          pending = Arrays.copyOf(pending, top * 2);
+          pendingIndex = Arrays.copyOf(pendingIndex, top * 2);
+        }
+        pending[top] = child;
+        pendingIndex[top++] = index;
+      }
+    }
+    return arena;
+  }
+}
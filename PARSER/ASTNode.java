@@ -1,7 +1,5 @@
 package PARSER;
 
-import CSE_Machine.NodeCopier;
-
 // Represents a node in the Abstract Syntax Tree (AST)
 public class ASTNode {
   private ASTNodeType type; // Type of the AST node
@@ -55,11 +53,6 @@ public class ASTNode {
     this.value = value;
   }
 
-  // Accept a NodeCopier visitor to perform a copy operation on the AST node
-  public ASTNode accept(NodeCopier nodeCopier) {
-    return nodeCopier.copy(this);
-  }
-
   // Get the source line number where the AST node appears
   public int getSourceLineNumber() {
     return sourceLineNumber;
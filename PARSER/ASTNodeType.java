@@ -66,8 +66,11 @@ public enum ASTNodeType {
   // non-standardized AST.
   BETA(""),
   DELTA(""),
-  ETA(""),
-  TUPLE("");
+  RECDELTA(""),
+  ADDRESS(""),
+  ENV(""),
+  MEMO(""),
+  LITERAL("");
 
   private String printName; // used for printing AST representation
 
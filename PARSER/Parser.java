@@ -1,94 +1,238 @@
 package PARSER;
 
-import java.util.Stack;
+import java.util.Arrays;
 
 import SCANNER.Scanner;
 import SCANNER.Token;
+import SCANNER.TokenKind;
 import SCANNER.TokenType;
 
 // Represents a parser that builds an Abstract Syntax Tree (AST) from a sequence of tokens.
+//
+// The rules do not call each other: a rule that needs another one parsed first
+// pushes what is left of itself on an explicit work stack, followed by the
+// other rule, and the loop in beginParse runs the top of that stack until it is
+// empty. The operator layers from T down to R are parsed by precedence
+// climbing, so an operand is read once whatever its depth in the grammar. A
+// deeply nested program grows the work stack, never the Java stack. The tree
+// is built in an ASTArena.
 public class Parser {
+  // Levels of the expression grammar, from the loosest to the tightest; an
+  // expression parsed at a level is a phrase of the nonterminal of that name
+  private static final int T_LEVEL = 1;
+  private static final int TA_LEVEL = 2;
+  private static final int TC_LEVEL = 3;
+  private static final int B_LEVEL = 4;
+  private static final int BT_LEVEL = 5;
+  private static final int BS_LEVEL = 6;
+  private static final int BP_LEVEL = 7;
+  private static final int A_LEVEL = 8;
+  private static final int AT_LEVEL = 9;
+  private static final int AF_LEVEL = 10;
+  private static final int AP_LEVEL = 11;
+  private static final int R_LEVEL = 12;
+  private static final int RN_LEVEL = 13;
+
+  // Work left to do, pushed on the work stack with two arguments
+  private static final int E = 0;
+  private static final int LET_IN = 1; // 'in' E of a let
+  private static final int WHERE = 2; // optional 'where' Dr of an Ew
+  private static final int D = 3;
+  private static final int WITHIN = 4; // optional 'within' D of a D
+  private static final int DA = 5;
+  private static final int AND = 6; // more 'and' Dr of a Da, with the count so far
+  private static final int DR = 7;
+  private static final int DB_CLOSE = 8; // ')' of a '(' D ')'
+  private static final int EXPRESSION = 9; // an expression of at least the given level
+  private static final int OPERATORS = 10; // operators applied to the expression just parsed
+  private static final int OPERAND = 11; // an Rn
+  private static final int OPERAND_CLOSE = 12; // ')' of a '(' E ')'
+  private static final int CONDITIONAL_BAR = 13; // '|' of a conditional
+  private static final int TAU = 14; // more ',' Ta of a tuple, with the count so far
+  private static final int BUILD = 15; // build a node of the given type and number of children
+  private static final int BUILD_OPERATOR = 16; // build an operator node, then set the level
+
+  private static final ASTNodeType[] NODE_TYPES = ASTNodeType.values();
+
   private Scanner s;
   private Token currentToken;
-  Stack<ASTNode> stack;
+
+  private ASTArena arena = new ASTArena();
+  private int[] stack = new int[64]; // nodes of the arena built so far
+  private int nodeCount;
+
+  private int[] work = new int[3 * 64];
+  private int workCount;
+  private int level; // level of the expression parsed last
 
   public Parser(Scanner s) {
     // Initialize the parser with the given scanner.
     this.s = s;
-    stack = new Stack<ASTNode>();
   }
 
   public AST buildAST() {
     beginParse(); // Start the parsing process.
-    return new AST(stack.pop());
+    return new AST(arena, stack[--nodeCount]);
   }
 
   public void beginParse() {
     // Start the parsing process by reading the first token.
     readPop();
-    E();
+    push(E, 0, 0);
+    while (workCount > 0) {
+      workCount -= 3;
+      int rule = work[workCount];
+      int first = work[workCount + 1];
+      int second = work[workCount + 2];
+      switch (rule) {
+        case E:
+          E();
+          break;
+        case LET_IN:
+          if (kind() != TokenKind.IN)
+            throw new ParseException("E:  'in' expected"); // check for 'in'
+          readPop();
+          push(BUILD, ASTNodeType.LET.ordinal(), 2);
+          push(E, 0, 0);
+          break;
+        case WHERE:
+          if (kind() == TokenKind.WHERE) {
+            readPop();
+            push(BUILD, ASTNodeType.WHERE.ordinal(), 2);
+            push(DR, 0, 0);
+          }
+          break;
+        case D:
+          push(WITHIN, 0, 0);
+          push(DA, 0, 0);
+          break;
+        case WITHIN:
+          if (kind() == TokenKind.WITHIN) {
+            readPop();
+            push(BUILD, ASTNodeType.WITHIN.ordinal(), 2);
+            push(D, 0, 0);
+          }
+          break;
+        case DA:
+          push(AND, 1, 0);
+          push(DR, 0, 0);
+          break;
+        case AND:
+          if (kind() == TokenKind.AND) {
+            readPop();
+            push(AND, first + 1, 0);
+            push(DR, 0, 0);
+          } else if (first > 1) {
+            buildNAryASTNode(ASTNodeType.SIMULTDEF, first);
+          }
+          break;
+        case DR:
+          DR();
+          break;
+        case DB_CLOSE:
+          if (!isCurrentTokenType(TokenType.R_PAREN))
+            throw new ParseException("DB: ')' expected");
+          readPop();
+          break;
+        case EXPRESSION:
+          expression(first);
+          break;
+        case OPERATORS:
+          operators(first);
+          break;
+        case OPERAND:
+          RN();
+          break;
+        case OPERAND_CLOSE:
+          if (!isCurrentTokenType(TokenType.R_PAREN))
+            throw new ParseException("RN: ')' expected");
+          readPop();
+          level = RN_LEVEL;
+          break;
+        case CONDITIONAL_BAR:
+          if (kind() != TokenKind.BAR)
+            throw new ParseException("TC: '|' expected");
+          readPop();
+          break;
+        case TAU:
+          if (kind() == TokenKind.COMMA) {
+            readPop();
+            push(TAU, first + 1, 0);
+            push(EXPRESSION, TA_LEVEL, 0);
+          } else {
+            buildNAryASTNode(ASTNodeType.TAU, first);
+            level = T_LEVEL;
+          }
+          break;
+        case BUILD:
+          buildNAryASTNode(NODE_TYPES[first], second);
+          break;
+        case BUILD_OPERATOR:
+          if (first >= 0)
+            buildNAryASTNode(NODE_TYPES[first], operandCount(NODE_TYPES[first]));
+          level = second;
+          break;
+        default:
+          throw new IllegalStateException("Unknown parser rule " + rule);
+      }
+    }
     if (currentToken != null)
       throw new ParseException("Expected EOF.");
   }
 
   private void readPop() {
-    do {
-      // get the next token and ignore comments and delete tokens
-      currentToken = s.readNextToken();
-    } while (isCurrentTokenType(TokenType.DELETE));
+    currentToken = s.readNextToken();
+  }
 
-    if (null != currentToken) {
-      if (currentToken.getType() == TokenType.IDENTIFIER) {
-        createTerminalASTNode(ASTNodeType.IDENTIFIER, currentToken.getValue());
-      } else if (currentToken.getType() == TokenType.INTEGER) {
-        createTerminalASTNode(ASTNodeType.INTEGER, currentToken.getValue());
-      } else if (currentToken.getType() == TokenType.STRING) {
-        createTerminalASTNode(ASTNodeType.STRING, currentToken.getValue());
-      }
-    }
+  private void push(int rule, int first, int second) {
+    if (workCount == work.length)
+      work = Arrays.copyOf(work, workCount * 2);
+    work[workCount] = rule;
+    work[workCount + 1] = first;
+    work[workCount + 2] = second;
+    workCount += 3;
   }
 
-  private boolean isCurrentToken(TokenType type, String value) {
-    // Check if the current token matches the given type and value.
-    if (currentToken == null)
-      return false;
-    if (currentToken.getType() != type || !currentToken.getValue().equals(value))
-      return false;
-    return true;
+  private TokenKind kind() {
+    // Get the keyword or operator symbol of the current token.
+    return currentToken == null ? TokenKind.NONE : currentToken.getKind();
   }
 
   private boolean isCurrentTokenType(TokenType type) {
     // Check if the current token matches the given type.
-    if (currentToken == null)
-      return false;
-    if (currentToken.getType() == type)
-      return true;
-    return false;
+    return currentToken != null && currentToken.getType() == type;
   }
 
   private void buildNAryASTNode(ASTNodeType type, int numOfChildren) {
     // Pop the top n nodes from the stack and create a new AST node with the given
     // type.
-    ASTNode node = new ASTNode();
-    node.setType(type);
+    int node = arena.newNode(type, null, 0);
     while (numOfChildren > 0) {
-      ASTNode child = stack.pop();
-      if (node.getChild() != null) // add the child to the front of the list
-        child.setSibling(node.getChild());
-      node.setChild(child);
-      node.setSourceLineNumber(child.getSourceLineNumber());
+      int child = stack[--nodeCount];
+      // add the child to the front of the list
+      arena.setSibling(child, arena.getChild(node));
+      arena.setChild(node, child);
+      arena.setSourceLineNumber(node, arena.getSourceLineNumber(child));
       numOfChildren--;
     }
-    stack.push(node);
+    pushNode(node);
   }
 
   private void createTerminalASTNode(ASTNodeType type, String value) {
     // Create a new terminal AST node with the given type and value.
-    ASTNode node = new ASTNode();
-    node.setType(type);
-    node.setValue(value);
-    node.setSourceLineNumber(currentToken.getSourceLineNumber());
-    stack.push(node);
+    pushNode(arena.newNode(type, value, currentToken.getSourceLineNumber()));
+  }
+
+  private void pushNode(int node) {
+    if (nodeCount == stack.length)
+      stack = Arrays.copyOf(stack, nodeCount * 2);
+    stack[nodeCount++] = node;
+  }
+
+  private void readIdentifier() {
+    // Create a node for the current identifier and read past it.
+    pushNode(arena.newNode(ASTNodeType.IDENTIFIER, currentToken.getSymbol(), currentToken.getSourceLineNumber()));
+    readPop();
   }
 
   /*
@@ -97,306 +241,209 @@ public class Parser {
    * E -> ’let’ D ’in’ E => ’let’
    * -> ’fn’ Vb+ ’.’ E => ’lambda’
    * -> Ew;
-   * 
-   * Parses the E non-terminal, which represents an expression in the language
-   * grammar.
-   * Handles cases for let expressions and lambda functions, recursively parsing
-   * sub-expressions.
+   *
+   * Ew -> T ’where’ Dr => ’where’
+   * -> T;
    */
-
   private void E() {
-    if (isCurrentToken(TokenType.KEYWORD, "let")) {
-      readPop();
-      D();
-      if (!isCurrentToken(TokenType.KEYWORD, "in"))
-        throw new ParseException("E:  'in' expected"); // check for 'in'
+    if (kind() == TokenKind.LET) {
       readPop();
-      E();
-      buildNAryASTNode(ASTNodeType.LET, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "fn")) {
-      int treesToPop = 0;
-
+      push(LET_IN, 0, 0);
+      push(D, 0, 0);
+    } else if (kind() == TokenKind.FN) {
       readPop();
-      while (isCurrentTokenType(TokenType.IDENTIFIER) || isCurrentTokenType(TokenType.L_PAREN)) {
-        VB();
-        treesToPop++;
-      }
-
+      int treesToPop = VBs();
       if (treesToPop == 0)
         throw new ParseException("E: at least one 'Vb' expected");
-
-      if (!isCurrentToken(TokenType.OPERATOR, "."))
+      if (kind() != TokenKind.DOT)
         throw new ParseException("E: '.' expected");
-
       readPop();
-      E();
-
-      buildNAryASTNode(ASTNodeType.LAMBDA, treesToPop + 1);
-    } else
-      EW();
-  }
-
-  /*
-   * Ew -> T ’where’ Dr => ’where’
-   * -> T;
-   * Parses the Ew non-terminal, which represents an expression with a where
-   * clause in the language grammar.
-   * Handles cases for expressions with where clauses, recursively parsing
-   * sub-expressions.
-   */
-
-  private void EW() {
-    T();
-    if (isCurrentToken(TokenType.KEYWORD, "where")) {
-      readPop();
-      DR();
-      buildNAryASTNode(ASTNodeType.WHERE, 2);
+      push(BUILD, ASTNodeType.LAMBDA.ordinal(), treesToPop + 1);
+      push(E, 0, 0);
+    } else {
+      push(WHERE, 0, 0);
+      push(EXPRESSION, T_LEVEL, 0);
     }
   }
 
   /*
-   * ----------Tuple Expresssions-------
+   * Parses an expression of at least the given level: its first operand, with
+   * the prefix operator before it, if any. The operators that follow the
+   * operand are parsed by operators().
    *
-   * T -> Ta ( ’,’ Ta )+ => ’tau’
-   * -> Ta ;
-   * 
-   * Parses the T non-terminal, which represents a tuple in the language grammar.
-   */
-  private void T() {
-    TA();
-    int treesToPop = 0;
-    while (isCurrentToken(TokenType.OPERATOR, ",")) {
-      readPop();
-      TA();
-      treesToPop++;
-    }
-    if (treesToPop > 0)
-      buildNAryASTNode(ASTNodeType.TAU, treesToPop + 1);
-  }
-
-  /*
-   * Ta -> Ta ’aug’ Tc => ’aug’
-   * -> Tc ;
-   */
-
-  private void TA() {
-    TC();
-
-    while (isCurrentToken(TokenType.KEYWORD, "aug")) {
-      readPop();
-      TC();
-      buildNAryASTNode(ASTNodeType.AUG, 2);
-    }
-  }
-
-  /*
-   * Tc -> B ’->’ Tc ’|’ Tc => ’->’
-   * -> B ;
+   * Bs -> ’not’ Bp => ’not’
+   * A -> ’+’ At
+   * -> ’-’ At => ’neg’
    */
-
-  private void TC() {
-    B();
-    if (isCurrentToken(TokenType.OPERATOR, "->")) {
+  private void expression(int min) {
+    push(OPERATORS, min, 0);
+    TokenKind kind = kind();
+    if (kind == TokenKind.NOT && min <= BS_LEVEL) {
       readPop();
-      TC();
-      if (!isCurrentToken(TokenType.OPERATOR, "|"))
-        throw new ParseException("TC: '|' expected");
+      push(BUILD_OPERATOR, ASTNodeType.NOT.ordinal(), BS_LEVEL);
+      push(EXPRESSION, BP_LEVEL, 0);
+    } else if (kind == TokenKind.MINUS && min <= A_LEVEL) {
       readPop();
-      TC();
-      buildNAryASTNode(ASTNodeType.CONDITIONAL, 3);
-    }
-  }
-
-  /*
-   * --------Boolean Expressions ----------
-   * B ->B’or’ Bt => ’or’
-   * -> Bt ;
-   */
-
-  private void B() {
-    BT();
-    while (isCurrentToken(TokenType.KEYWORD, "or")) {
+      push(BUILD_OPERATOR, ASTNodeType.NEG.ordinal(), A_LEVEL);
+      push(EXPRESSION, AT_LEVEL, 0);
+    } else if (kind == TokenKind.PLUS && min <= A_LEVEL) {
       readPop();
-      BT();
-      buildNAryASTNode(ASTNodeType.OR, 2);
+      push(BUILD_OPERATOR, -1, A_LEVEL);
+      push(EXPRESSION, AT_LEVEL, 0);
+    } else {
+      RN();
     }
   }
 
   /*
+   * Parses the operator after the expression on top of the node stack, if it
+   * applies: its rule is at least the given level, and that expression is a
+   * phrase of the operator's left operand. The operator is then folded into
+   * the expression, and this is tried again.
+   *
+   * T -> Ta ( ’,’ Ta )+ => ’tau’
+   * Ta -> Ta ’aug’ Tc => ’aug’
+   * Tc -> B ’->’ Tc ’|’ Tc => ’->’
+   * B -> B ’or’ Bt => ’or’
    * Bt -> Bt ’&’ Bs => ’&’
-   * -> Bs ;
-   */
-
-  private void BT() {
-    BS();
-    while (isCurrentToken(TokenType.OPERATOR, "&")) {
-      readPop();
-      BS();
-      buildNAryASTNode(ASTNodeType.AND, 2);
-    }
-  }
-
-  /*
-   * Bs -> ’not’ Bp => ’not’
-   * -> Bp ;
-   */
-  private void BS() {
-    if (isCurrentToken(TokenType.KEYWORD, "not")) {
-      readPop();
-      BP();
-      buildNAryASTNode(ASTNodeType.NOT, 1);
-    } else
-      BP();
-  }
-
-  /*
    * Bp -> A (’gr’ | ’>’ ) A => ’gr’
    * -> A (’ge’ | ’>=’) A => ’ge’
    * -> A (’ls’ | ’<’ ) A => ’ls’
    * -> A (’le’ | ’<=’) A => ’le’
    * -> A ’eq’ A => ’eq’
    * -> A ’ne’ A => ’ne’
-   * -> A ;
-   */
-
-  private void BP() {
-    A();
-    if (isCurrentToken(TokenType.KEYWORD, "gr") || isCurrentToken(TokenType.OPERATOR, ">")) {
-
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.GR, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "ge") || isCurrentToken(TokenType.OPERATOR, ">=")) {
-
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.GE, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "ls") || isCurrentToken(TokenType.OPERATOR, "<")) {
-
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.LS, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "le") || isCurrentToken(TokenType.OPERATOR, "<=")) {
-
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.LE, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "eq")) {
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.EQ, 2);
-    } else if (isCurrentToken(TokenType.KEYWORD, "ne")) {
-      readPop();
-      A();
-      buildNAryASTNode(ASTNodeType.NE, 2);
-    }
-  }
-
-  /*
-   * --------Arithmmetic Expressions------------
-   * A ->A’+’ At => ’+’
+   * A -> A ’+’ At => ’+’
    * -> A ’-’ At => ’-’
-   * -> ’+’ At
-   * -> ’-’ At => ’neg’
-   * -> At ;
-   */
-  private void A() {
-    if (isCurrentToken(TokenType.OPERATOR, "+")) {
-      readPop();
-      AT();
-    } else if (isCurrentToken(TokenType.OPERATOR, "-")) {
-      readPop();
-      AT();
-      buildNAryASTNode(ASTNodeType.NEG, 1);
-    } else
-      AT();
-
-    boolean plus = true;
-    while (isCurrentToken(TokenType.OPERATOR, "+") || isCurrentToken(TokenType.OPERATOR, "-")) {
-      if (currentToken.getValue().equals("+"))
-        plus = true;
-      else if (currentToken.getValue().equals("-"))
-        plus = false;
-      readPop();
-      AT();
-      if (plus)
-        buildNAryASTNode(ASTNodeType.PLUS, 2);
-      else
-        buildNAryASTNode(ASTNodeType.MINUS, 2);
-    }
-  }
-
-  /*
    * At -> At ’*’ Af => ’*’
    * -> At ’/’ Af => ’/’
-   * -> Af ;
+   * Af -> Ap ’**’ Af => ’**’
+   * Ap -> Ap ’@’ ’<IDENTIFIER>’ R => ’@’
+   * R -> R Rn => ’gamma’
    */
-
-  private void AT() {
-    AF();
-    boolean mult = true;
-    while (isCurrentToken(TokenType.OPERATOR, "*") || isCurrentToken(TokenType.OPERATOR, "/")) {
-      if (currentToken.getValue().equals("*"))
-        mult = true;
-      else if (currentToken.getValue().equals("/"))
-        mult = false;
-      readPop();
-      AF();
-      if (mult)
-        buildNAryASTNode(ASTNodeType.MULT, 2);
-      else
-        buildNAryASTNode(ASTNodeType.DIV, 2);
+  private void operators(int min) {
+    int left = level;
+    switch (kind()) {
+      case COMMA:
+        if (min <= T_LEVEL && left >= TA_LEVEL) {
+          readPop();
+          push(OPERATORS, min, 0);
+          push(TAU, 2, 0);
+          push(EXPRESSION, TA_LEVEL, 0);
+        }
+        break;
+      case AUG:
+        binary(min, left, ASTNodeType.AUG, TA_LEVEL, TA_LEVEL, TC_LEVEL);
+        break;
+      case ARROW:
+        if (min <= TC_LEVEL && left >= B_LEVEL) {
+          readPop();
+          push(OPERATORS, min, 0);
+          push(BUILD_OPERATOR, ASTNodeType.CONDITIONAL.ordinal(), TC_LEVEL);
+          push(EXPRESSION, TC_LEVEL, 0);
+          push(CONDITIONAL_BAR, 0, 0);
+          push(EXPRESSION, TC_LEVEL, 0);
+        }
+        break;
+      case OR:
+        binary(min, left, ASTNodeType.OR, B_LEVEL, B_LEVEL, BT_LEVEL);
+        break;
+      case AMPERSAND:
+        binary(min, left, ASTNodeType.AND, BT_LEVEL, BT_LEVEL, BS_LEVEL);
+        break;
+      case GR:
+      case GREATER:
+        binary(min, left, ASTNodeType.GR, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case GE:
+      case GREATER_EQUAL:
+        binary(min, left, ASTNodeType.GE, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case LS:
+      case LESS:
+        binary(min, left, ASTNodeType.LS, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case LE:
+      case LESS_EQUAL:
+        binary(min, left, ASTNodeType.LE, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case EQ:
+        binary(min, left, ASTNodeType.EQ, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case NE:
+        binary(min, left, ASTNodeType.NE, BP_LEVEL, A_LEVEL, A_LEVEL);
+        break;
+      case PLUS:
+        binary(min, left, ASTNodeType.PLUS, A_LEVEL, A_LEVEL, AT_LEVEL);
+        break;
+      case MINUS:
+        binary(min, left, ASTNodeType.MINUS, A_LEVEL, A_LEVEL, AT_LEVEL);
+        break;
+      case TIMES:
+        binary(min, left, ASTNodeType.MULT, AT_LEVEL, AT_LEVEL, AF_LEVEL);
+        break;
+      case DIVIDE:
+        binary(min, left, ASTNodeType.DIV, AT_LEVEL, AT_LEVEL, AF_LEVEL);
+        break;
+      case POWER:
+        binary(min, left, ASTNodeType.EXP, AF_LEVEL, AP_LEVEL, AF_LEVEL);
+        break;
+      case AT:
+        if (min <= AP_LEVEL && left >= AP_LEVEL) {
+          readPop();
+          if (!isCurrentTokenType(TokenType.IDENTIFIER))
+            throw new ParseException("AP: expected Identifier");
+          readIdentifier();
+          push(OPERATORS, min, 0);
+          push(BUILD_OPERATOR, ASTNodeType.AT.ordinal(), AP_LEVEL);
+          push(EXPRESSION, R_LEVEL, 0);
+        }
+        break;
+      default:
+        if (min <= R_LEVEL && left >= R_LEVEL && isOperandStart()) {
+          push(OPERATORS, min, 0);
+          push(BUILD_OPERATOR, ASTNodeType.GAMMA.ordinal(), R_LEVEL);
+          push(OPERAND, 0, 0);
+        }
     }
   }
 
-  /*
-   * Af -> Ap ’**’ Af => ’**’
-   * -> Ap ;
-   */
-  private void AF() {
-    AP();
-    if (isCurrentToken(TokenType.OPERATOR, "**")) {
-      readPop();
-      AF();
-      buildNAryASTNode(ASTNodeType.EXP, 2);
-    }
+  private void binary(int min, int left, ASTNodeType type, int ruleLevel, int leftLevel, int rightLevel) {
+    // Parse the binary operator of the given rule if it applies.
+    if (min > ruleLevel || left < leftLevel)
+      return;
+    readPop();
+    push(OPERATORS, min, 0);
+    push(BUILD_OPERATOR, type.ordinal(), ruleLevel);
+    push(EXPRESSION, rightLevel, 0);
   }
 
-  /*
-   * Ap -> Ap ’@’ ’<IDENTIFIER>’ R => ’@’
-   * -> R ;
-   */
-  private void AP() {
-    R();
-    while (isCurrentToken(TokenType.OPERATOR, "@")) {
-      readPop();
-      if (!isCurrentTokenType(TokenType.IDENTIFIER))
-        throw new ParseException("AP: expected Identifier");
-      readPop();
-      R();
-      buildNAryASTNode(ASTNodeType.AT, 3);
+  private static int operandCount(ASTNodeType type) {
+    switch (type) {
+      case NOT:
+      case NEG:
+        return 1;
+      case CONDITIONAL:
+      case AT:
+        return 3;
+      default:
+        return 2;
     }
   }
 
-  /*
-   * ---------Operators and Operands----------
-   * R ->RRn => ’gamma’
-   * -> Rn ;
-   */
-  private void R() {
-    RN();
-    readPop();
-    while (isCurrentTokenType(TokenType.INTEGER) ||
-        isCurrentTokenType(TokenType.STRING) ||
-        isCurrentTokenType(TokenType.IDENTIFIER) ||
-        isCurrentToken(TokenType.KEYWORD, "true") ||
-        isCurrentToken(TokenType.KEYWORD, "false") ||
-        isCurrentToken(TokenType.KEYWORD, "nil") ||
-        isCurrentToken(TokenType.KEYWORD, "dummy") ||
-        isCurrentTokenType(TokenType.L_PAREN)) {
-      RN();
-      buildNAryASTNode(ASTNodeType.GAMMA, 2);
-      readPop();
+  private boolean isOperandStart() {
+    // Check if the current token can start an Rn.
+    if (currentToken == null)
+      return false;
+    switch (currentToken.getType()) {
+      case IDENTIFIER:
+      case INTEGER:
+      case STRING:
+      case L_PAREN:
+        return true;
+      default:
+        TokenKind kind = currentToken.getKind();
+        return kind == TokenKind.TRUE || kind == TokenKind.FALSE || kind == TokenKind.NIL
+            || kind == TokenKind.DUMMY;
     }
   }
 
@@ -409,70 +456,67 @@ public class Parser {
    * -> ’nil’ => ’nil’
    * -> ’(’ E ’)’
    * -> ’dummy’ => ’dummy’ ;
-   * 
    */
   private void RN() {
-    if (isCurrentTokenType(TokenType.IDENTIFIER) ||
-        isCurrentTokenType(TokenType.INTEGER) ||
-        isCurrentTokenType(TokenType.STRING)) {
-    } else if (isCurrentToken(TokenType.KEYWORD, "true")) {
-      createTerminalASTNode(ASTNodeType.TRUE, "true");
-    } else if (isCurrentToken(TokenType.KEYWORD, "false")) {
-      createTerminalASTNode(ASTNodeType.FALSE, "false");
-    } else if (isCurrentToken(TokenType.KEYWORD, "nil")) {
-      createTerminalASTNode(ASTNodeType.NIL, "nil");
-    } else if (isCurrentTokenType(TokenType.L_PAREN)) {
-      readPop();
-      E();
-      if (!isCurrentTokenType(TokenType.R_PAREN))
-        throw new ParseException("RN: ')' expected");
-    } else if (isCurrentToken(TokenType.KEYWORD, "dummy")) {
-      createTerminalASTNode(ASTNodeType.DUMMY, "dummy");
+    level = RN_LEVEL;
+    if (currentToken == null)
+      throw new ParseException("RN: operand expected");
+    switch (currentToken.getType()) {
+      case IDENTIFIER:
+        readIdentifier();
+        return;
+      case INTEGER:
+        createTerminalASTNode(ASTNodeType.INTEGER, currentToken.getValue());
+        readPop();
+        return;
+      case STRING:
+        createTerminalASTNode(ASTNodeType.STRING, currentToken.getValue());
+        readPop();
+        return;
+      case L_PAREN:
+        readPop();
+        push(OPERAND_CLOSE, 0, 0);
+        push(E, 0, 0);
+        return;
+      default:
+        break;
+    }
+    switch (kind()) {
+      case TRUE:
+        createTerminalASTNode(ASTNodeType.TRUE, "true");
+        break;
+      case FALSE:
+        createTerminalASTNode(ASTNodeType.FALSE, "false");
+        break;
+      case NIL:
+        createTerminalASTNode(ASTNodeType.NIL, "nil");
+        break;
+      case DUMMY:
+        createTerminalASTNode(ASTNodeType.DUMMY, "dummy");
+        break;
+      default:
+        throw new ParseException("RN: operand expected");
     }
+    readPop();
   }
 
   /*
    * --------Definitions--------
    * D -> Da ’within’ D => ’within’
    * -> Da ;
-   * 
-   */
-  private void D() {
-    DA();
-    if (isCurrentToken(TokenType.KEYWORD, "within")) {
-      readPop();
-      D();
-      buildNAryASTNode(ASTNodeType.WITHIN, 2);
-    }
-  }
-
-  /*
+   *
    * Da -> Dr ( ’and’ Dr )+ => ’and’
    * -> Dr ;
-   */
-  private void DA() {
-    DR();
-    int treesToPop = 0;
-    while (isCurrentToken(TokenType.KEYWORD, "and")) {
-      readPop();
-      DR();
-      treesToPop++;
-    }
-    if (treesToPop > 0)
-      buildNAryASTNode(ASTNodeType.SIMULTDEF, treesToPop + 1);
-  }
-
-  /*
+   *
    * Dr -> ’rec’ Db => ’rec’
+   * -> Db ;
    */
   private void DR() {
-    if (isCurrentToken(TokenType.KEYWORD, "rec")) {
+    if (kind() == TokenKind.REC) {
       readPop();
-      DB();
-      buildNAryASTNode(ASTNodeType.REC, 1);
-    } else {
-      DB();
+      push(BUILD, ASTNodeType.REC.ordinal(), 1);
     }
+    DB();
   }
 
   /*
@@ -482,47 +526,36 @@ public class Parser {
    */
   private void DB() {
     if (isCurrentTokenType(TokenType.L_PAREN)) {
-      D();
-      readPop();
-      if (!isCurrentTokenType(TokenType.R_PAREN))
-        throw new ParseException("DB: ')' expected");
       readPop();
+      push(DB_CLOSE, 0, 0);
+      push(D, 0, 0);
     } else if (isCurrentTokenType(TokenType.IDENTIFIER)) {
-      readPop();
-      if (isCurrentToken(TokenType.OPERATOR, ",")) {
+      readIdentifier();
+      if (kind() == TokenKind.COMMA) {
         readPop();
         VL();
-        if (!isCurrentToken(TokenType.OPERATOR, "="))
+        if (kind() != TokenKind.EQUALS)
           throw new ParseException("DB: = expected.");
         buildNAryASTNode(ASTNodeType.COMMA, 2);
         readPop();
-        E();
-        buildNAryASTNode(ASTNodeType.EQUAL, 2);
+        push(BUILD, ASTNodeType.EQUAL.ordinal(), 2);
+        push(E, 0, 0);
+      } else if (kind() == TokenKind.EQUALS) {
+        readPop();
+        push(BUILD, ASTNodeType.EQUAL.ordinal(), 2);
+        push(E, 0, 0);
       } else {
-        if (isCurrentToken(TokenType.OPERATOR, "=")) {
-          readPop();
-          E();
-          buildNAryASTNode(ASTNodeType.EQUAL, 2);
-        } else {
-          int treesToPop = 0;
-
-          while (isCurrentTokenType(TokenType.IDENTIFIER) || isCurrentTokenType(TokenType.L_PAREN)) {
-            VB();
-            treesToPop++;
-          }
-
-          if (treesToPop == 0)
-            throw new ParseException("E: at least one 'Vb' expected");
-
-          if (!isCurrentToken(TokenType.OPERATOR, "="))
-            throw new ParseException("DB: = expected.");
-
-          readPop();
-          E();
-
-          buildNAryASTNode(ASTNodeType.FCNFORM, treesToPop + 2);
-        }
+        int treesToPop = VBs();
+        if (treesToPop == 0)
+          throw new ParseException("DB: at least one 'Vb' expected");
+        if (kind() != TokenKind.EQUALS)
+          throw new ParseException("DB: = expected.");
+        readPop();
+        push(BUILD, ASTNodeType.FCNFORM.ordinal(), treesToPop + 2);
+        push(E, 0, 0);
       }
+    } else {
+      throw new ParseException("DB: definition expected");
     }
   }
 
@@ -531,21 +564,29 @@ public class Parser {
    * Vb -> ’<IDENTIFIER>’
    * -> ’(’ Vl ’)’
    * -> ’(’ ’)’ => ’()’;
+   *
+   * Parses as many Vb as there are, and gets their number.
    */
-  private void VB() {
-    if (isCurrentTokenType(TokenType.IDENTIFIER)) {
-      readPop();
-    } else if (isCurrentTokenType(TokenType.L_PAREN)) {
-      readPop();
-      if (isCurrentTokenType(TokenType.R_PAREN)) {
-        createTerminalASTNode(ASTNodeType.PAREN, "");
+  private int VBs() {
+    int count = 0;
+    while (true) {
+      if (isCurrentTokenType(TokenType.IDENTIFIER)) {
+        readIdentifier();
+      } else if (isCurrentTokenType(TokenType.L_PAREN)) {
         readPop();
+        if (isCurrentTokenType(TokenType.R_PAREN)) {
+          createTerminalASTNode(ASTNodeType.PAREN, "");
+          readPop();
+        } else {
+          VL();
+          if (!isCurrentTokenType(TokenType.R_PAREN))
+            throw new ParseException("VB: ')' expected");
+          readPop();
+        }
       } else {
-        VL();
-        if (!isCurrentTokenType(TokenType.R_PAREN))
-          throw new ParseException("VB: ')' expected");
-        readPop();
+        return count;
       }
+      count++;
     }
   }
 
@@ -555,19 +596,17 @@ public class Parser {
   private void VL() {
     if (!isCurrentTokenType(TokenType.IDENTIFIER))
       throw new ParseException("VL: Identifier expected");
-    else {
+    readIdentifier();
+    int treesToPop = 0;
+    while (kind() == TokenKind.COMMA) {
       readPop();
-      int treesToPop = 0;
-      while (isCurrentToken(TokenType.OPERATOR, ",")) {
-        readPop();
-        if (!isCurrentTokenType(TokenType.IDENTIFIER))
-          throw new ParseException("VL: Identifier expected");
-        readPop();
-        treesToPop++;
-      }
-      if (treesToPop > 0)
-        buildNAryASTNode(ASTNodeType.COMMA, treesToPop + 1);
+      if (!isCurrentTokenType(TokenType.IDENTIFIER))
+        throw new ParseException("VL: Identifier expected");
+      readIdentifier();
+      treesToPop++;
     }
+    if (treesToPop > 0)
+      buildNAryASTNode(ASTNodeType.COMMA, treesToPop + 1);
   }
 
 }
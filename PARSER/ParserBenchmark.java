@@ -0,0 +1,48 @@
+package PARSER;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import SCANNER.Scanner;
+import SCANNER.ScannerBenchmark;
+
+// ParserBenchmark class measures how fast the Parser builds the AST of a
+// generated RPAL source of the given size, in megabytes (8 by default),
+// counting the time spent scanning as well, how long the AST takes to
+// standardize, and how many bytes each node of the arena takes:
+//
+//   java PARSER.ParserBenchmark [megabytes]
+public class ParserBenchmark {
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    Path file = Files.createTempFile("parser", ".rpal");
+    try {
+      Files.write(file, ScannerBenchmark.generate(megabytes << 20).getBytes(Charset.defaultCharset()));
+      long tokens = 0;
+      Scanner scanner = new Scanner(file.toString());
+      while (scanner.readNextToken() != null)
+        tokens++;
+
+      AST ast = null;
+      for (int round = 1; round <= ROUNDS; round++) {
+        long start = System.nanoTime();
+        ast = new Parser(new Scanner(file.toString())).buildAST();
+        double seconds = (System.nanoTime() - start) / 1e9;
+        long standardizeStart = System.nanoTime();
+        ast.standardize();
+        double standardizeSeconds = (System.nanoTime() - standardizeStart) / 1e9;
+        System.out.printf("round %d: %d tokens in %.3f s, %.0f tokens/s, standardized in %.3f s%n", round,
+            tokens, seconds, tokens / seconds, standardizeSeconds);
+      }
+      ASTArena arena = ast.getArena();
+      System.out.printf("%d nodes, %.1f bytes per node%n", arena.size(),
+          (double) arena.getMemoryUsed() / arena.size());
+    } finally {
+      Files.delete(file);
+    }
+  }
+}
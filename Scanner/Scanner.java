@@ -1,230 +1,474 @@
 package SCANNER;
 
-import java.io.BufferedReader;
-import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.IntStream;
 
+// Scanner class splits an RPAL source into tokens. The whole file is mapped
+// into memory and decoded into one char[], characters are classified with a
+// lookup table, keywords and operator symbols are recognised by a switch on
+// their characters and tagged with their TokenKind, identifiers are interned
+// in the SymbolTable, and the text of any other token is sliced from the
+// buffer. Whitespace and comments are
+// skipped without building a token for them. A large source is split into
+// chunks that are scanned in parallel before the first token is read.
 public class Scanner {
-  private BufferedReader buffer;
-  private String extraCharRead;
-  private final List<String> reservedIdentifiers = Arrays
-      .asList(new String[] { "let", "in", "within", "fn", "where", "aug", "or",
-          "not", "gr", "ge", "ls", "le", "eq", "ne", "true",
-          "false", "nil", "dummy", "rec", "and" });
+  // Character classes of the RPAL lexicon (see RPAL_Lex.pdf); a character may
+  // belong to several
+  private static final int LETTER = 1;
+  private static final int IDENTIFIER = 2; // letter, digit or _
+  private static final int DIGIT = 4;
+  private static final int PUNCTUATION = 8; // ( ) ;
+  private static final int OPERATOR = 16;
+  private static final int SPACE = 32;
+
+  private static final int[] CLASSES = new int[128];
+
+  static {
+    for (char c = 'a'; c <= 'z'; c++) {
+      CLASSES[c] |= LETTER | IDENTIFIER;
+      CLASSES[Character.toUpperCase(c)] |= LETTER | IDENTIFIER;
+    }
+    for (char c = '0'; c <= '9'; c++)
+      CLASSES[c] |= DIGIT | IDENTIFIER;
+    CLASSES['_'] |= IDENTIFIER;
+    for (char c : "();".toCharArray())
+      CLASSES[c] |= PUNCTUATION;
+    // , is scanned as an operator symbol, and the parser expects it as one
+    for (char c : "+,-./~:=|!#%_{}\"*<>&$^[\\]?@".toCharArray())
+      CLASSES[c] |= OPERATOR;
+    for (char c : " \t\n\u000B\f\r".toCharArray())
+      CLASSES[c] |= SPACE;
+  }
+
+  // Sources of at least this many characters are scanned in parallel
+  static final int PARALLEL_THRESHOLD = 1 << 22;
+  // Approximate number of characters in each chunk scanned in parallel
+  private static final int CHUNK_SIZE = 1 << 20;
+
+  private final char[] source;
+  private final int end;
+  private int stop; // scanning stops at the first token starting here or later
+  private int position;
   private int sourceLineNumber;
-  
+  private boolean halted; // stopped at an unterminated string or a stray character
+
+  // The token found by the last call to scan
+  private TokenType tokenType;
+  private int tokenStart;
+  private int tokenEnd;
+  private int tokenLine;
+
+  // Tokens scanned in advance, in parallel, or null when scanning on demand
+  private TokenTable[] tables;
+  private int nextTable;
+  private int nextToken;
+
   // Constructor to initialize the scanner with the input file
   public Scanner(String inputFile) throws IOException {
-    sourceLineNumber = 1;
-    buffer = new BufferedReader(new InputStreamReader(new FileInputStream(new File(inputFile))));
+    this(readSource(inputFile));
   }
-  
-  // Method to read the next token from the input file
-  public Token readNextToken() {
-    Token nextToken = null;
-    String nextChar;
-    if (extraCharRead != null) {
-      nextChar = extraCharRead;
-      extraCharRead = null;
-    } else
-      nextChar = readNextChar();
-    if (nextChar != null)
-      nextToken = buildToken(nextChar);
-    return nextToken;
-  }
-  
-  // Method to read the next character from the input file
-  private String readNextChar() {
-    String nextChar = null;
-    try {
-      int c = buffer.read();
-      if (c != -1) {
-        nextChar = Character.toString((char) c);
-        if (nextChar.equals("\n"))
-          sourceLineNumber++;
-      } else
-        buffer.close();
-    } catch (IOException e) {
-    }
-    return nextChar;
-  }
-  
-
-  // Method to build the token based on the current character read
-  private Token buildToken(String currentChar) {
-    Token nextToken = null;
-    if (LexicalRegexPatterns.LetterPattern.matcher(currentChar).matches()) {
-      nextToken = buildIdentifierToken(currentChar);
-    } else if (LexicalRegexPatterns.DigitPattern.matcher(currentChar).matches()) {
-      nextToken = buildIntegerToken(currentChar);
-    } else if (LexicalRegexPatterns.OpSymbolPattern.matcher(currentChar).matches()) { // comment tokens are also entered
-                                                                                      // from here
-      nextToken = buildOperatorToken(currentChar);
-    } else if (currentChar.equals("\'")) {
-      nextToken = buildStringToken(currentChar);
-    } else if (LexicalRegexPatterns.SpacePattern.matcher(currentChar).matches()) {
-      nextToken = buildSpaceToken(currentChar);
-    } else if (LexicalRegexPatterns.PunctuationPattern.matcher(currentChar).matches()) {
-      nextToken = buildPunctuationPattern(currentChar);
+
+  private Scanner(CharBuffer chars) {
+    this(chars.array(), chars.arrayOffset() + chars.position(),
+        chars.arrayOffset() + chars.position() + chars.remaining());
+  }
+
+  // Constructor to initialize the scanner with source text held in memory. A
+  // large source is scanned in parallel when there is more than one processor.
+  public Scanner(char[] source, int start, int end) {
+    this(source, start, end,
+        end - start >= PARALLEL_THRESHOLD && Runtime.getRuntime().availableProcessors() > 1);
+  }
+
+  // Constructor to initialize the scanner, scanning the whole source in
+  // parallel up front if parallel is set
+  Scanner(char[] source, int start, int end, boolean parallel) {
+    this(source, start, end, end, 1);
+    if (parallel)
+      tables = scanInParallel(start);
+  }
+
+  // Constructor for a scanner that reads tokens starting before stop, on the
+  // given line; a token may run on past stop, up to end
+  private Scanner(char[] source, int start, int stop, int end, int sourceLineNumber) {
+    this.source = source;
+    this.position = start;
+    this.stop = stop;
+    this.end = end;
+    this.sourceLineNumber = sourceLineNumber;
+  }
+
+  // Method to map a file into memory and decode it into characters
+  static CharBuffer readSource(String inputFile) throws IOException {
+    try (FileChannel channel = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+      MappedByteBuffer bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      return Charset.defaultCharset().decode(bytes);
     }
-    return nextToken;
-  }
-  
-  // Method to build an identifier token
-  private Token buildIdentifierToken(String currentChar) {
-    Token identifierToken = new Token();
-    identifierToken.setType(TokenType.IDENTIFIER);
-    identifierToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder(currentChar);
-
-    String nextChar = readNextChar();
-    while (nextChar != null) { 
-      if (LexicalRegexPatterns.IdentifierPattern.matcher(nextChar).matches()) {
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
-      } else {
-        extraCharRead = nextChar;
-        break;
+  }
+
+  // Method to read the next token, or get null at the end of the input or at a
+  // character that cannot start a token
+  public Token readNextToken() {
+    if (tables == null)
+      return scan() ? newToken(tokenType, tokenStart, tokenEnd, tokenLine) : null;
+
+    while (nextTable < tables.length) {
+      TokenTable table = tables[nextTable];
+      if (nextToken < table.count) {
+        int i = nextToken++;
+        return newToken(TOKEN_TYPES[table.types[i]], table.starts[i], table.ends[i], table.lines[i]);
       }
+      nextTable++;
+      nextToken = 0;
     }
+    return null;
+  }
 
-    String value = sBuilder.toString();
-    if (reservedIdentifiers.contains(value))
-      identifierToken.setType(TokenType.KEYWORD);
-
-    identifierToken.setValue(value);
-    return identifierToken;
-  }
-  
-  // Method to build an integer token
-  private Token buildIntegerToken(String currentChar) {
-    Token integerToken = new Token();
-    integerToken.setType(TokenType.INTEGER);
-    integerToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder(currentChar);
-
-    String nextChar = readNextChar();
-    while (nextChar != null) { // null indicates the file ended
-      if (LexicalRegexPatterns.DigitPattern.matcher(nextChar).matches()) {
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
+  // Method to find the next token that starts before stop, and leave it in
+  // tokenType, tokenStart, tokenEnd and tokenLine; false if there is none
+  private boolean scan() {
+    while (position < stop) {
+      char c = source[position];
+      int classes = c < CLASSES.length ? CLASSES[c] : 0;
+      if ((classes & SPACE) != 0) {
+        skipSpaces();
+      } else if (c == '/' && position + 1 < end && source[position + 1] == '/') {
+        skipComment();
+      } else if ((classes & LETTER) != 0) {
+        return scanIdentifier();
+      } else if ((classes & DIGIT) != 0) {
+        return scanRun(TokenType.INTEGER, DIGIT);
+      } else if ((classes & OPERATOR) != 0) {
+        return scanRun(TokenType.OPERATOR, OPERATOR);
+      } else if (c == '\'') {
+        return scanString();
+      } else if ((classes & PUNCTUATION) != 0) {
+        return scanPunctuation(c);
       } else {
-        extraCharRead = nextChar;
-        break;
+        halted = true;
+        return false;
       }
     }
-
-    integerToken.setValue(sBuilder.toString());
-    return integerToken;
+    return false;
   }
 
-  // Method to build an operator token
-  private Token buildOperatorToken(String currentChar) {
-    Token opSymbolToken = new Token();
-    opSymbolToken.setType(TokenType.OPERATOR);
-    opSymbolToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder(currentChar);
+  // Method to scan the source in chunks that start at the beginning of a line,
+  // on the common fork-join pool. Only a string can run on past the end of a
+  // line, so a chunk scanned from its start gives the same tokens as the
+  // sequential scan unless the chunk before it ended in a string; that chunk
+  // is then scanned again from where the string ended. The tokens are kept as
+  // positions in the source, and built one at a time as they are read.
+  private TokenTable[] scanInParallel(int start) {
+    List<Integer> starts = new ArrayList<Integer>();
+    starts.add(start);
+    for (int next = start + CHUNK_SIZE; next < end; next += CHUNK_SIZE) {
+      while (next < end && source[next - 1] != '\n')
+        next++;
+      if (next < end)
+        starts.add(next);
+    }
+    starts.add(end);
+    int chunks = starts.size() - 1;
 
-    String nextChar = readNextChar();
+    // Line each chunk starts on, from the newlines in the chunks before it
+    int[] newlines = new int[chunks];
+    IntStream.range(0, chunks).parallel().forEach(i -> {
+      int count = 0;
+      for (int j = starts.get(i); j < starts.get(i + 1); j++)
+        if (source[j] == '\n')
+          count++;
+      newlines[i] = count;
+    });
+    int[] lines = new int[chunks];
+    lines[0] = 1;
+    for (int i = 1; i < chunks; i++)
+      lines[i] = lines[i - 1] + newlines[i - 1];
 
-    if (currentChar.equals("/") && nextChar.equals("/"))
-      return buildCommentToken(currentChar + nextChar);
+    Scanner[] scanned = new Scanner[chunks];
+    TokenTable[] found = new TokenTable[chunks];
+    IntStream.range(0, chunks).parallel().forEach(i -> {
+      scanned[i] = new Scanner(source, starts.get(i), starts.get(i + 1), end, lines[i]);
+      found[i] = scanned[i].scanAll();
+    });
 
-    while (nextChar != null) { // null indicates the file ended
-      if (LexicalRegexPatterns.OpSymbolPattern.matcher(nextChar).matches()) {
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
-      } else {
-        extraCharRead = nextChar;
-        break;
+    List<TokenTable> result = new ArrayList<TokenTable>();
+    int position = start;
+    int line = 1;
+    for (int i = 0; i < chunks; i++) {
+      if (starts.get(i + 1) <= position)
+        continue; // inside a string that began in an earlier chunk
+      Scanner chunk = scanned[i];
+      TokenTable table = found[i];
+      if (position != starts.get(i)) {
+        chunk = new Scanner(source, position, starts.get(i + 1), end, line);
+        table = chunk.scanAll();
       }
+      result.add(table);
+      if (chunk.halted)
+        break;
+      position = chunk.position;
+      line = chunk.sourceLineNumber;
     }
+    return result.toArray(new TokenTable[0]);
+  }
 
-    opSymbolToken.setValue(sBuilder.toString());
-    return opSymbolToken;
-  }
-  
-  // Method to build a string token
-  private Token buildStringToken(String currentChar) {
-    Token stringToken = new Token();
-    stringToken.setType(TokenType.STRING);
-    stringToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder("");
-
-    String nextChar = readNextChar();
-    while (nextChar != null) { 
-      if (nextChar.equals("\'")) { 
-        
-        stringToken.setValue(sBuilder.toString());
-        return stringToken;
-      } else if (LexicalRegexPatterns.StringPattern.matcher(nextChar).matches()) { // match Letter | Digit |
-                                                                                   // Operator_symbol
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
-      }
+  // Method to scan every token that starts before stop
+  private TokenTable scanAll() {
+    TokenTable table = new TokenTable();
+    while (scan())
+      table.add(tokenType, tokenStart, tokenEnd, tokenLine);
+    return table;
+  }
+
+  private static boolean is(char c, int characterClass) {
+    return c < CLASSES.length && (CLASSES[c] & characterClass) != 0;
+  }
+
+  private void skipSpaces() {
+    while (position < stop && is(source[position], SPACE)) {
+      if (source[position] == '\n')
+        sourceLineNumber++;
+      position++;
     }
+  }
 
-    return null;
+  // A comment runs from // to the end of the line, and takes the newline with it
+  private void skipComment() {
+    while (position < end && source[position] != '\n')
+      position++;
+    if (position < end) {
+      sourceLineNumber++;
+      position++;
+    }
   }
-  // Method to build a space token
-  private Token buildSpaceToken(String currentChar) {
-    Token deleteToken = new Token();
-    deleteToken.setType(TokenType.DELETE);
-    deleteToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder(currentChar);
-
-    String nextChar = readNextChar();
-    while (nextChar != null) { // null indicates the file ended
-      if (LexicalRegexPatterns.SpacePattern.matcher(nextChar).matches()) {
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
-      } else {
-        extraCharRead = nextChar;
-        break;
-      }
+
+  // Method to scan the longest run of characters of one class
+  private boolean scanRun(TokenType type, int characterClass) {
+    int start = position;
+    position++;
+    while (position < end && is(source[position], characterClass))
+      position++;
+    return found(type, start, position, sourceLineNumber);
+  }
+
+  private boolean scanIdentifier() {
+    int start = position;
+    position++;
+    while (position < end && is(source[position], IDENTIFIER))
+      position++;
+
+    boolean isKeyword = keyword(source, start, position - start) != null;
+    return found(isKeyword ? TokenType.KEYWORD : TokenType.IDENTIFIER, start, position, sourceLineNumber);
+  }
+
+  // A string runs to the next quote; there are no escapes, so \ is kept as it is
+  private boolean scanString() {
+    int line = sourceLineNumber;
+    int start = position + 1;
+    int close = start;
+    while (close < end && source[close] != '\'')
+      close++;
+    if (close == end) { // an unterminated string ends the input
+      position = end;
+      halted = true;
+      return false;
     }
+    for (int i = start; i < close; i++)
+      if (source[i] == '\n')
+        sourceLineNumber++;
+    position = close + 1;
+    return found(TokenType.STRING, start, close, line);
+  }
 
-    deleteToken.setValue(sBuilder.toString());
-    return deleteToken;
-  }
-  
-  // Method to build a comment token
-  private Token buildCommentToken(String currentChar) {
-    Token commentToken = new Token();
-    commentToken.setType(TokenType.DELETE);
-    commentToken.setSourceLineNumber(sourceLineNumber);
-    StringBuilder sBuilder = new StringBuilder(currentChar);
-
-    String nextChar = readNextChar();
-    while (nextChar != null) { // null indicates the file ended
-      if (LexicalRegexPatterns.CommentPattern.matcher(nextChar).matches()) {
-        sBuilder.append(nextChar);
-        nextChar = readNextChar();
-      } else if (nextChar.equals("\n"))
+  private boolean scanPunctuation(char c) {
+    int start = position++;
+    TokenType type = c == '(' ? TokenType.L_PAREN : c == ')' ? TokenType.R_PAREN : TokenType.SEMICOLON;
+    return found(type, start, position, sourceLineNumber);
+  }
+
+  private boolean found(TokenType type, int start, int stop, int line) {
+    tokenType = type;
+    tokenStart = start;
+    tokenEnd = stop;
+    tokenLine = line;
+    return true;
+  }
+
+  // Method to build the token of the given type spelt by source[start, stop)
+  private Token newToken(TokenType type, int start, int stop, int line) {
+    Token token = new Token();
+    token.setType(type);
+    switch (type) {
+      case KEYWORD:
+        token.setKind(keyword(source, start, stop - start));
+        token.setValue(token.getKind().getSpelling());
+        break;
+      case OPERATOR:
+        token.setKind(operator(source, start, stop - start));
+        token.setValue(new String(source, start, stop - start));
         break;
+      case IDENTIFIER:
+        token.setSymbol(SymbolTable.intern(source, start, stop - start));
+        token.setValue(SymbolTable.name(token.getSymbol()));
+        break;
+      case L_PAREN:
+        token.setValue("(");
+        break;
+      case R_PAREN:
+        token.setValue(")");
+        break;
+      case SEMICOLON:
+        token.setValue(";");
+        break;
+      default:
+        token.setValue(new String(source, start, stop - start));
+    }
+    token.setSourceLineNumber(line);
+    return token;
+  }
+
+  // Method to get the keyword spelt by the given characters, or null if they
+  // do not spell one
+  static TokenKind keyword(char[] text, int start, int length) {
+    switch (length) {
+      case 2:
+        switch (text[start]) {
+          case 'i':
+            return matches(text, start, TokenKind.IN);
+          case 'f':
+            return matches(text, start, TokenKind.FN);
+          case 'o':
+            return matches(text, start, TokenKind.OR);
+          case 'g':
+            return text[start + 1] == 'r' ? TokenKind.GR : text[start + 1] == 'e' ? TokenKind.GE : null;
+          case 'l':
+            return text[start + 1] == 's' ? TokenKind.LS : text[start + 1] == 'e' ? TokenKind.LE : null;
+          case 'e':
+            return matches(text, start, TokenKind.EQ);
+          case 'n':
+            return matches(text, start, TokenKind.NE);
+          default:
+            return null;
+        }
+      case 3:
+        switch (text[start]) {
+          case 'l':
+            return matches(text, start, TokenKind.LET);
+          case 'a':
+            return text[start + 1] == 'u' ? matches(text, start, TokenKind.AUG) : matches(text, start, TokenKind.AND);
+          case 'n':
+            return text[start + 1] == 'o' ? matches(text, start, TokenKind.NOT) : matches(text, start, TokenKind.NIL);
+          case 'r':
+            return matches(text, start, TokenKind.REC);
+          default:
+            return null;
+        }
+      case 4:
+        return text[start] == 't' ? matches(text, start, TokenKind.TRUE) : null;
+      case 5:
+        switch (text[start]) {
+          case 'w':
+            return matches(text, start, TokenKind.WHERE);
+          case 'f':
+            return matches(text, start, TokenKind.FALSE);
+          case 'd':
+            return matches(text, start, TokenKind.DUMMY);
+          default:
+            return null;
+        }
+      case 6:
+        return text[start] == 'w' ? matches(text, start, TokenKind.WITHIN) : null;
+      default:
+        return null;
     }
+  }
 
-    commentToken.setValue(sBuilder.toString());
-    return commentToken;
-  }
-  // Method to build a punctuation token
-  private Token buildPunctuationPattern(String currentChar) {
-    Token punctuationToken = new Token();
-    punctuationToken.setSourceLineNumber(sourceLineNumber);
-    punctuationToken.setValue(currentChar);
-    if (currentChar.equals("("))
-      punctuationToken.setType(TokenType.L_PAREN);
-    else if (currentChar.equals(")"))
-      punctuationToken.setType(TokenType.R_PAREN);
-    else if (currentChar.equals(";"))
-      punctuationToken.setType(TokenType.SEMICOLON);
-    else if (currentChar.equals(","))
-      punctuationToken.setType(TokenType.COMMA);
-
-    return punctuationToken;
+  // Method to get the operator symbol spelt by the given characters, or NONE
+  // if the grammar does not use it
+  static TokenKind operator(char[] text, int start, int length) {
+    char first = text[start];
+    if (length == 1) {
+      switch (first) {
+        case ',':
+          return TokenKind.COMMA;
+        case '.':
+          return TokenKind.DOT;
+        case '|':
+          return TokenKind.BAR;
+        case '&':
+          return TokenKind.AMPERSAND;
+        case '>':
+          return TokenKind.GREATER;
+        case '<':
+          return TokenKind.LESS;
+        case '+':
+          return TokenKind.PLUS;
+        case '-':
+          return TokenKind.MINUS;
+        case '*':
+          return TokenKind.TIMES;
+        case '/':
+          return TokenKind.DIVIDE;
+        case '@':
+          return TokenKind.AT;
+        case '=':
+          return TokenKind.EQUALS;
+        default:
+          return TokenKind.NONE;
+      }
+    }
+    if (length == 2) {
+      char second = text[start + 1];
+      if (first == '-' && second == '>')
+        return TokenKind.ARROW;
+      if (first == '*' && second == '*')
+        return TokenKind.POWER;
+      if (second == '=')
+        return first == '>' ? TokenKind.GREATER_EQUAL : first == '<' ? TokenKind.LESS_EQUAL : TokenKind.NONE;
+    }
+    return TokenKind.NONE;
+  }
+
+  private static TokenKind matches(char[] text, int start, TokenKind keyword) {
+    String spelling = keyword.getSpelling();
+    for (int i = 1; i < spelling.length(); i++)
+      if (text[start + i] != spelling.charAt(i))
+        return null;
+    return keyword;
+  }
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  // TokenTable class holds the tokens of one chunk as positions in the source,
+  // so that a parallel scan does not build millions of objects up front
+  private static final class TokenTable {
+    private byte[] types = new byte[256];
+    private int[] starts = new int[256];
+    private int[] ends = new int[256];
+    private int[] lines = new int[256];
+    private int count;
+
+    private void add(TokenType type, int start, int end, int line) {
+      if (count == types.length) {
+        types = Arrays.copyOf(types, count * 2);
+        starts = Arrays.copyOf(starts, count * 2);
+        ends = Arrays.copyOf(ends, count * 2);
+        lines = Arrays.copyOf(lines, count * 2);
+      }
+      types[count] = (byte) type.ordinal();
+      starts[count] = start;
+      ends[count] = end;
+      lines[count] = line;
+      count++;
+    }
   }
 }
@@ -0,0 +1,52 @@
+package SCANNER;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+// ScannerBenchmark class measures how fast the Scanner tokenizes a generated
+// RPAL source of the given size, in megabytes (8 by default):
+//
+//   java SCANNER.ScannerBenchmark [megabytes]
+public class ScannerBenchmark {
+  private static final int ROUNDS = 5;
+
+  public static void main(String[] args) throws IOException {
+    int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+    Path file = Files.createTempFile("scanner", ".rpal");
+    try {
+      Files.write(file, generate(megabytes << 20).getBytes(Charset.defaultCharset()));
+      for (int round = 1; round <= ROUNDS; round++) {
+        long start = System.nanoTime();
+        Scanner scanner = new Scanner(file.toString());
+        long tokens = 0;
+        while (scanner.readNextToken() != null)
+          tokens++;
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("round %d: %d tokens in %.3f s, %.0f tokens/s%n", round, tokens, seconds,
+            tokens / seconds);
+      }
+    } finally {
+      Files.delete(file);
+    }
+  }
+
+  // Method to generate a source of about the given number of characters, with
+  // a mix of definitions, keywords, operators, strings and comments; it is a
+  // valid program, one let nested in the next
+  public static String generate(int size) {
+    StringBuilder source = new StringBuilder(size + 200);
+    int i = 0;
+    while (source.length() < size) {
+      source.append("// helper number ").append(i).append('\n');
+      source.append("let rec Helper").append(i).append(" (T, N) = N eq 0 -> 'done' | N ls ").append(i)
+          .append(" & not (T eq nil) -> Helper").append(i).append(" (T aug N, N - 1)\n");
+      source.append("  | Conc 'n=' (ItoS (N * ").append(i).append(" ** 2 + Order T)) where X = (1, 2, 3)\n");
+      source.append("in\n");
+      i++;
+    }
+    source.append("Print 'end'\n");
+    return source.toString();
+  }
+}
@@ -0,0 +1,97 @@
+package SCANNER;
+
+import java.util.Arrays;
+
+// SymbolTable class gives every distinct name a dense integer id, the first
+// time the scanner reads it; identifiers are then compared and looked up by
+// that id. The text of an identifier is hashed straight from the scanner's
+// buffer, so a name read again allocates nothing. Integer and string literals
+// are kept here too, as the values of AST nodes. Ids are never reused.
+public final class SymbolTable {
+  private static String[] names = new String[1024];
+  private static int[] hashes = new int[1024];
+  private static int count;
+  // Open addressing table of id + 1, or 0 for a free slot
+  private static int[] slots = new int[2048];
+
+  private SymbolTable() {
+  }
+
+  // Method to get the id of the name spelt by the given characters
+  public static synchronized int intern(char[] text, int start, int length) {
+    int hash = 0;
+    for (int i = start; i < start + length; i++)
+      hash = 31 * hash + text[i];
+
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+      int id = slots[slot] - 1;
+      if (id < 0)
+        return add(new String(text, start, length), hash, slot);
+      if (hashes[id] == hash && spells(names[id], text, start, length))
+        return id;
+    }
+  }
+
+  // Method to get the id of the given name
+  public static synchronized int intern(String name) {
+    int hash = name.hashCode();
+    int mask = slots.length - 1;
+    for (int slot = mix(hash) & mask;; slot = (slot + 1) & mask) {
+      int id = slots[slot] - 1;
+      if (id < 0)
+        return add(name, hash, slot);
+      if (hashes[id] == hash && names[id].equals(name))
+        return id;
+    }
+  }
+
+  // Method to get the name with the given id
+  public static synchronized String name(int id) {
+    return names[id];
+  }
+
+  // Getter method for the number of names interned so far, one more than the largest id
+  public static synchronized int size() {
+    return count;
+  }
+
+  private static int add(String name, int hash, int slot) {
+    if (count == names.length) {
+      names = Arrays.copyOf(names, count * 2);
+      hashes = Arrays.copyOf(hashes, count * 2);
+    }
+    names[count] = name;
+    hashes[count] = hash;
+    slots[slot] = count + 1;
+    count++;
+    if (count * 2 > slots.length)
+      rehash();
+    return count - 1;
+  }
+
+  private static void rehash() {
+    slots = new int[slots.length * 2];
+    int mask = slots.length - 1;
+    for (int id = 0; id < count; id++) {
+      int slot = mix(hashes[id]) & mask;
+      while (slots[slot] != 0)
+        slot = (slot + 1) & mask;
+      slots[slot] = id + 1;
+    }
+  }
+
+  // Spread the bits of a String hash code, whose low bits are weak for short names
+  private static int mix(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean spells(String name, char[] text, int start, int length) {
+    if (name.length() != length)
+      return false;
+    for (int i = 0; i < length; i++)
+      if (name.charAt(i) != text[start + i])
+        return false;
+    return true;
+  }
+}
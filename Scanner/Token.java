@@ -3,7 +3,9 @@ package SCANNER;
 // Token class represents a lexical token identified by the scanner
 public class Token {
     private TokenType type; // Type of the token
+    private TokenKind kind = TokenKind.NONE; // Keyword or operator symbol the token is, if any
     private String value; // Value of the token (e.g., identifier name, integer value)
+    private int symbol = -1; // SymbolTable id of an identifier, or -1 for other tokens
     private int sourceLineNumber; // Line number in the source file where the token was found
 
     // Method to get the type of the token
@@ -16,6 +18,16 @@ public class Token {
         this.type = type;
     }
 
+    // Method to get the keyword or operator symbol of the token
+    public TokenKind getKind() {
+        return this.kind;
+    }
+
+    // Method to set the keyword or operator symbol of the token
+    public void setKind(TokenKind kind) {
+        this.kind = kind;
+    }
+
     // Method to get the value of the token
     public String getValue() {
         return this.value;
@@ -26,6 +38,16 @@ public class Token {
         this.value = value;
     }
 
+    // Method to get the SymbolTable id of the identifier, or -1 if the token is not one
+    public int getSymbol() {
+        return this.symbol;
+    }
+
+    // Method to set the SymbolTable id of the identifier
+    public void setSymbol(int symbol) {
+        this.symbol = symbol;
+    }
+
     // Method to get the source line number of the token
     public int getSourceLineNumber() {
         return this.sourceLineNumber;
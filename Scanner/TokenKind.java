@@ -0,0 +1,58 @@
+package SCANNER;
+
+// TokenKind enum tells which keyword or operator symbol a token is. The scanner
+// resolves it once, so the parser switches on it instead of comparing strings.
+public enum TokenKind {
+    NONE(""), // Identifier, integer, string, punctuation or an operator the grammar does not use
+
+    // Keywords
+    LET("let"),
+    IN("in"),
+    FN("fn"),
+    WHERE("where"),
+    AUG("aug"),
+    OR("or"),
+    NOT("not"),
+    GR("gr"),
+    GE("ge"),
+    LS("ls"),
+    LE("le"),
+    EQ("eq"),
+    NE("ne"),
+    TRUE("true"),
+    FALSE("false"),
+    NIL("nil"),
+    DUMMY("dummy"),
+    WITHIN("within"),
+    AND("and"),
+    REC("rec"),
+
+    // Operator symbols
+    COMMA(","),
+    DOT("."),
+    ARROW("->"),
+    BAR("|"),
+    AMPERSAND("&"),
+    GREATER(">"),
+    GREATER_EQUAL(">="),
+    LESS("<"),
+    LESS_EQUAL("<="),
+    PLUS("+"),
+    MINUS("-"),
+    TIMES("*"),
+    DIVIDE("/"),
+    POWER("**"),
+    AT("@"),
+    EQUALS("=");
+
+    private final String spelling;
+
+    TokenKind(String spelling) {
+        this.spelling = spelling;
+    }
+
+    // Method to get the text of the keyword or symbol
+    public String getSpelling() {
+        return spelling;
+    }
+}
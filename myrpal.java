@@ -1,7 +1,9 @@
 import CSE_Machine.*;
+import OPTIMIZER.*;
 import PARSER.*;
 import SCANNER.*;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class myrpal {
   public static String fileName;
@@ -10,9 +12,15 @@ public class myrpal {
     fileName = ""; // = args[0];
     AST ast = null;
     boolean astFlag = false;
+    boolean vmFlag = false;
+    boolean jitFlag = false;
+    boolean statsFlag = false;
+    boolean memoFlag = false;
+    boolean cacheFlag = false;
+    int optimizationLevel = PassManager.DEFAULT_LEVEL;
 
     if (args.length < 1) {
-      System.out.println("Usage: java myrpal -ast <filename>");
+      System.out.println("Usage: java myrpal [-ast] [-vm] [-jit] [-O0|-O1|-O2] [-stats] [-memo] [-cache] <filename>");
       return;
     }
 
@@ -20,25 +28,35 @@ public class myrpal {
       System.out.println(arg);
     }
 
-    if (args[0].equals("-ast")) {
-      if (args.length < 2) {
-        System.out.println("Error: Missing filename after -ast flag");
-        return;
-      }
-      astFlag = true;
-      fileName = args[1];
-    } else
-      fileName = args[0];
-
-    try {
-      Scanner scanner = new Scanner(fileName);
-      Parser parser = new Parser(scanner);
-      ast = parser.buildAST();
-    } catch (IOException e) {
-      throw new ParseException("ERROR: File cannot be read, please check again. ");
+    for (String arg : args) {
+      if (arg.equals("-ast"))
+        astFlag = true;
+      else if (arg.equals("-vm"))
+        vmFlag = true; // run on the bytecode machine instead of the CSE machine
+      else if (arg.equals("-jit"))
+        jitFlag = true; // run on the bytecode machine, compiling hot functions to JVM bytecode
+      else if (arg.matches("-O[0-9]")) {
+        optimizationLevel = arg.charAt(2) - '0';
+        if (optimizationLevel > PassManager.MAX_LEVEL) {
+          System.out.println("Error: Optimization levels are -O0 to -O" + PassManager.MAX_LEVEL);
+          return;
+        }
+      } else if (arg.equals("-stats"))
+        statsFlag = true; // print what each optimization pass did
+      else if (arg.equals("-memo"))
+        memoFlag = true; // cache the results of rec functions
+      else if (arg.equals("-cache"))
+        cacheFlag = true; // keep the compiled program on disk and reuse it while the source is unchanged
+      else
+        fileName = arg;
+    }
+    if (fileName.isEmpty()) {
+      System.out.println("Error: Missing filename after flags");
+      return;
     }
 
     if (astFlag) {
+      ast = buildAST(fileName);
       ast.printAST(); // if ast flag is there then print the AST, nothing else
       /*
        * as for the requirements,
@@ -46,10 +64,55 @@ public class myrpal {
        * nothing else.
        */
     } else {
-      ast.standardize();
-      CSEMachine csem = new CSEMachine(ast);
-      csem.evaluateProgram();
+      ProgramCache cache = null;
+      Delta program = null;
+      if (cacheFlag) {
+        try {
+          cache = new ProgramCache(Paths.get(fileName), optimizationLevel);
+        } catch (IOException e) {
+          throw new ParseException("ERROR: File cannot be read, please check again. ");
+        }
+        program = cache.load();
+        if (program != null && statsFlag)
+          System.err.println("loaded " + cache.getCacheFile());
+      }
+      if (program == null) {
+        ast = buildAST(fileName);
+        ast.standardize();
+        PassManager optimizer = new PassManager(optimizationLevel);
+        optimizer.optimize(ast);
+        if (statsFlag)
+          optimizer.printStatistics(System.err);
+        program = ast.createDeltas();
+        if (cache != null)
+          cache.store(program);
+      }
+      MemoCache memo = memoFlag ? new MemoCache(MemoCache.DEFAULT_CAPACITY) : null;
+      if (vmFlag || jitFlag) {
+        BytecodeMachine vm = new BytecodeMachine(program, jitFlag, memo);
+        vm.evaluateProgram();
+        if (statsFlag)
+          System.err.println("applications " + vm.getApplications());
+      } else {
+        CSEMachine csem = new CSEMachine(program, memo);
+        csem.evaluateProgram();
+        if (statsFlag)
+          System.err.println("applications " + csem.getApplications());
+      }
+      if (memo != null)
+        System.err.println(memo.getStatistics());
       System.out.println();
     }
   }
+
+  // Method to scan and parse the given file
+  private static AST buildAST(String fileName) {
+    try {
+      Scanner scanner = new Scanner(fileName);
+      Parser parser = new Parser(scanner);
+      return parser.buildAST();
+    } catch (IOException e) {
+      throw new ParseException("ERROR: File cannot be read, please check again. ");
+    }
+  }
 }